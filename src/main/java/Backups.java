@@ -0,0 +1,222 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Online copies of the shifts database through SQLite's backup API (sqlite-jdbc's
+// "backup to" / "restore from" statements).
+//
+// In-memory mode (tipcalc.memory=true) loads tip_calculator.db into an in-memory database at
+// startup and holds one connection to it for the life of the process. It also holds the file
+// itself, in exclusive locking mode, so no other process can write to it in the meantime and
+// have that overwritten; memory mode is refused if another process already has the file open.
+// A background thread copies the memory database back into the file every
+// tipcalc.backupIntervalSec seconds (default 300), on demand, and once more at exit. The copy
+// is written in place, as one transaction through the file's own WAL, so a crash mid-copy
+// leaves the previous state. Nothing waits on a copy: the backup API moves a batch of pages per
+// step, and writers only contend with the step in progress.
+//
+// snapshot() copies the live database, file or memory, to snapshots/<name>-<timestamp>.db. On a
+// file database the copy runs inside one WAL read transaction, so it is a consistent
+// point-in-time image while writers keep appending to the WAL. Only the main file is copied;
+// year partitions are separate files.
+final class Backups {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // one thread, so persists and snapshots never overlap
+    private static final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tipcalc-backup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static Connection holder;    // keeps the memory database alive; used by worker only
+    private static Connection fileLock;  // the database file, held exclusively; used by worker only
+
+    private Backups() {}
+
+    // ================= IN-MEMORY MODE =================
+
+    // Switches this process to an in-memory copy of the database file. Returns false (and the
+    // process stays on the file) if the database is partitioned, open in another process or
+    // can't be loaded.
+    static boolean startMemoryMode() {
+        File file = new File(Database.path());
+        try {
+            fileLock = lockFile(file);
+            if (ShiftPartitions.isPartitioned(fileLock)) {
+                Log.warn("memory_mode_unavailable", null, "reason", "partitioned database, using the file");
+                closeQuietly(fileLock);
+                fileLock = null;
+                return false;
+            }
+
+            Database.useMemory(true);
+            holder = Database.open();
+            try (Statement stmt = fileLock.createStatement()) {
+                // not the backup API: a page copy would carry the file's WAL header into the
+                // memory database, which can't open a WAL
+                stmt.execute("VACUUM INTO '" + Database.memoryFile() + "'");
+            }
+        } catch (SQLException e) {
+            if (Database.isBusy(e)) {
+                Log.warn("memory_mode_unavailable", null, "reason", "database is open in another process, using the file");
+            } else {
+                Log.error("memory_mode_failed", e, "db", file);
+            }
+            Database.useMemory(false);
+            closeQuietly(holder);
+            closeQuietly(fileLock);
+            holder = null;
+            fileLock = null;
+            return false;
+        }
+
+        long interval = Long.getLong("tipcalc.backupIntervalSec", 300);
+        worker.scheduleWithFixedDelay(Backups::persistQuietly, interval, interval, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(Backups::persistOnExit, "tipcalc-backup-exit"));
+        Log.info("memory_mode_started", "db", file, "backup_interval_sec", interval);
+        return true;
+    }
+
+    // Copies the memory database back to its file in the background.
+    static CompletableFuture<File> persist() {
+        if (!Database.inMemory()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("not running in memory"));
+        }
+        return submit(Backups::persistNow);
+    }
+
+    // Copies the live database to a new timestamped file in the background.
+    static CompletableFuture<File> snapshot() {
+        return submit(Backups::snapshotNow);
+    }
+
+    // ================= COPIES =================
+
+    // into the file itself, through the connection holding it, so it keeps its inode and WAL
+    private static File persistNow() throws SQLException {
+        try (Statement stmt = fileLock.createStatement()) {
+            stmt.executeUpdate("restore from \"" + Database.memoryFile() + "\"");
+        }
+        return new File(Database.path()).getAbsoluteFile();
+    }
+
+    private static File snapshotNow() throws SQLException, IOException {
+        File db = new File(Database.path()).getAbsoluteFile();
+        String base = db.getName().endsWith(".db") ? db.getName().substring(0, db.getName().length() - 3) : db.getName();
+        File dir = new File(db.getParentFile(), "snapshots");
+        Files.createDirectories(dir.toPath());
+        File dest = new File(dir, base + "-" + LocalDateTime.now().format(STAMP) + ".db");
+
+        if (Database.inMemory()) {
+            // a write from another connection mid-copy restarts it, so the copy stays consistent
+            backup(holder, dest);
+            return dest;
+        }
+
+        try (Connection conn = Database.open()) {
+            // pin one WAL snapshot for the whole copy instead of restarting on every commit
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+                rs.next();
+            }
+            try {
+                backup(conn, dest);
+            } finally {
+                conn.rollback();
+            }
+        }
+        return dest;
+    }
+
+    private static void backup(Connection src, File dest) throws SQLException {
+        try (Statement stmt = src.createStatement()) {
+            stmt.executeUpdate("backup to " + quote(dest));
+        }
+    }
+
+    // ================= HELPERS =================
+
+    // A connection to the database file that takes its exclusive lock and keeps it until closed
+    // (locking_mode EXCLUSIVE). Fails busy if another connection has the file open.
+    private static Connection lockFile(File file) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("busy_timeout", String.valueOf(Integer.getInteger("tipcalc.busyTimeoutMs", 5000)));
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath(), props);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA locking_mode = EXCLUSIVE");
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("BEGIN EXCLUSIVE");
+            stmt.execute("COMMIT");
+            return conn;
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Copy {
+        File run() throws SQLException, IOException;
+    }
+
+    private static CompletableFuture<File> submit(Copy copy) {
+        CompletableFuture<File> done = new CompletableFuture<>();
+        worker.execute(() -> {
+            long t0 = System.nanoTime();
+            try {
+                File file = copy.run();
+                Log.info("backup_written", "file", file, "ms", Log.ms(t0));
+                done.complete(file);
+            } catch (SQLException | IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    private static void persistQuietly() {
+        long t0 = System.nanoTime();
+        try {
+            Log.info("backup_written", "file", persistNow(), "ms", Log.ms(t0));
+        } catch (SQLException e) {
+            Log.error("background_backup_failed", e, "ms", Log.ms(t0));
+        }
+    }
+
+    // waits behind any copy in progress, then writes the final state
+    private static void persistOnExit() {
+        try {
+            persist().get(5, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            Log.error("backup_on_exit_failed", e);
+        }
+        // shutdown hooks run in no particular order; don't leave this one's events in the buffer
+        Log.flush();
+    }
+
+    private static String quote(File f) {
+        return '"' + f.getAbsolutePath() + '"';
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException ignored) {}
+    }
+}
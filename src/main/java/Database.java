@@ -0,0 +1,195 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Connection handling shared by every process that opens tip_calculator.db.
+//
+// Every connection handed out is wrapped by QueryLog, which times each statement.
+//
+// The database runs in WAL mode so readers never block the writer, each connection waits up to
+// the busy timeout for a lock, and writes that still hit SQLITE_BUSY/SQLITE_LOCKED are retried
+// with jittered exponential backoff. Settings come from system properties:
+//   tipcalc.db             database file (default tip_calculator.db)
+//   tipcalc.busyTimeoutMs  per-connection busy timeout (default 5000)
+//   tipcalc.writeAttempts  attempts per write before giving up (default 8)
+//   tipcalc.memory         run from an in-memory copy of the file (see Backups)
+final class Database {
+
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private static final long BACKOFF_BASE_MS = 10;
+    private static final long BACKOFF_CAP_MS = 1000;
+
+    // one memdb database per process (the leading '/' shares it between connections), with
+    // ordinary database-level locking, so busy_timeout applies; Backups keeps a connection open
+    // so it stays alive
+    private static final String MEMORY_FILE = "file:/tipcalc-memory?vfs=memdb";
+    private static volatile boolean memory;
+
+    // contention counters for this process
+    private static final AtomicLong busyErrors = new AtomicLong();
+    private static final AtomicLong retries = new AtomicLong();
+    private static final AtomicLong failedWrites = new AtomicLong();
+
+    private Database() {}
+
+    @FunctionalInterface
+    interface SqlWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    // ================= CONFIG =================
+
+    static String path() {
+        return System.getProperty("tipcalc.db", "tip_calculator.db");
+    }
+
+    static String url() {
+        return "jdbc:sqlite:" + (memory ? MEMORY_FILE : path());
+    }
+
+    // the in-memory database as a URI filename, for the backup API
+    static String memoryFile() {
+        return MEMORY_FILE;
+    }
+
+    static boolean inMemory() {
+        return memory;
+    }
+
+    static void useMemory(boolean on) {
+        memory = on;
+    }
+
+    private static int busyTimeoutMs() {
+        return Integer.getInteger("tipcalc.busyTimeoutMs", 5000);
+    }
+
+    private static int writeAttempts() {
+        return Math.max(1, Integer.getInteger("tipcalc.writeAttempts", 8));
+    }
+
+    // ================= CONNECTIONS =================
+
+    // one-time, persistent settings; safe to call on every start
+    static void configure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+    }
+
+    static Connection open() throws SQLException {
+        return open(false);
+    }
+
+    // a connection to some other database file, e.g. another location's tip_calculator.db
+    static Connection openFile(String path) throws SQLException {
+        if (!new File(path).isFile()) throw new SQLException("No such database: " + path);
+
+        Properties props = new Properties();
+        props.setProperty("busy_timeout", String.valueOf(busyTimeoutMs()));
+        return QueryLog.wrap(DriverManager.getConnection("jdbc:sqlite:" + path, props));
+    }
+
+    // writers take the write lock at BEGIN so a read-then-write transaction can't deadlock
+    // against another writer half way through
+    private static Connection open(boolean forWrite) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("busy_timeout", String.valueOf(busyTimeoutMs()));
+        // durable at checkpoint time, which is the recommended pairing with WAL
+        props.setProperty("synchronous", "NORMAL");
+        if (forWrite) props.setProperty("transaction_mode", "IMMEDIATE");
+
+        return QueryLog.wrap(DriverManager.getConnection(url(), props));
+    }
+
+    // Runs work in its own transaction, retrying the whole transaction while the database is busy.
+    static <T> T write(SqlWork<T> work) throws SQLException {
+        return write(null, work);
+    }
+
+    // As write(work), but runs setup on the connection first, outside the transaction. Needed for
+    // statements SQLite refuses inside one, such as ATTACH.
+    static <T> T write(SqlWork<?> setup, SqlWork<T> work) throws SQLException {
+        int attempts = writeAttempts();
+
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = open(true)) {
+                if (setup != null) setup.run(conn);
+                conn.setAutoCommit(false);
+                try {
+                    T result = work.run(conn);
+                    conn.commit();
+                    return result;
+                } catch (SQLException e) {
+                    rollbackQuietly(conn);
+                    throw e;
+                }
+            } catch (SQLException e) {
+                if (!isBusy(e)) throw e;
+
+                busyErrors.incrementAndGet();
+                if (attempt >= attempts) {
+                    failedWrites.incrementAndGet();
+                    throw new SQLException("database busy after " + attempt + " attempts", e.getSQLState(),
+                        e.getErrorCode(), e);
+                }
+                retries.incrementAndGet();
+                backoff(attempt);
+            }
+        }
+    }
+
+    static boolean isBusy(SQLException e) {
+        int code = e.getErrorCode() & 0xff;
+        if (code == SQLITE_BUSY || code == SQLITE_LOCKED) return true;
+
+        String msg = e.getMessage();
+        return msg != null && (msg.contains("SQLITE_BUSY") || msg.contains("SQLITE_LOCKED"));
+    }
+
+    // full jitter: sleep somewhere in [0, min(cap, base * 2^attempt))
+    private static void backoff(int attempt) throws SQLException {
+        long ceiling = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for database lock", e);
+        }
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException ignored) {}
+    }
+
+    // ================= STATS =================
+
+    static long busyErrors() {
+        return busyErrors.get();
+    }
+
+    static long retries() {
+        return retries.get();
+    }
+
+    static long failedWrites() {
+        return failedWrites.get();
+    }
+
+    static boolean hadContention() {
+        return busyErrors.get() > 0;
+    }
+
+    static String contentionReport() {
+        return "busy=" + busyErrors.get() + " retries=" + retries.get() + " failed=" + failedWrites.get();
+    }
+}
@@ -0,0 +1,111 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Summary, per-role report and top-earning shifts across several location databases.
+//
+// Each location file is one task that opens it and computes its partial aggregates (with its own
+// timing); the partials are merged in list order as they come back. The tasks block in JDBC, so
+// they run on a dedicated fixed pool sized to the cores (or the number of files, if fewer) rather
+// than a fork-join pool: dozens of locations scale with cores without flooding the machine with
+// connections. Locations are labelled by the path they were given as, since every location's
+// file is usually called tip_calculator.db.
+final class Federation {
+
+    private Federation() {}
+
+    // Queries every location for shifts dated in [from, to]. A location that fails is reported
+    // in the result rather than failing the whole run.
+    static Result query(List<String> files, LocalDate from, LocalDate to, int topN) {
+        int parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            long start = System.nanoTime();
+            List<Future<Result>> partials = new ArrayList<>();
+            for (String file : files) partials.add(pool.submit(() -> location(file, from, to, topN)));
+
+            Result r = new Result();
+            for (int i = 0; i < files.size(); i++) r.merge(partial(partials.get(i), files.get(i)), topN);
+            r.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            r.parallelism = parallelism;
+            return r;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // ================= TASKS =================
+
+    private static Result partial(Future<Result> task, String file) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            return failed(file, String.valueOf(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(file, "interrupted");
+        }
+    }
+
+    private static Result failed(String file, String error) {
+        Result r = new Result();
+        r.locations.add(new Location(file, 0, 0, error));
+        return r;
+    }
+
+    private static Result location(String file, LocalDate from, LocalDate to, int topN) {
+        Result r = new Result();
+        long start = System.nanoTime();
+
+        try (Connection conn = Database.openFile(file)) {
+            r.total = ShiftStore.summarize(conn, from, to);
+            r.byRole = ShiftStore.roleReport(conn, from, to);
+            for (ShiftStore.Shift s : ShiftStore.topShifts(conn, from, to, topN)) {
+                r.top.add(new LocatedShift(file, s));
+            }
+            r.locations.add(new Location(file, r.total.shiftCount, (System.nanoTime() - start) / 1_000_000, null));
+        } catch (SQLException e) {
+            r.locations.add(new Location(file, 0, (System.nanoTime() - start) / 1_000_000, e.getMessage()));
+        }
+        return r;
+    }
+
+    // ================= DATA =================
+
+    record LocatedShift(String location, ShiftStore.Shift shift) {}
+
+    // error is null on success
+    record Location(String name, int shifts, long elapsedMs, String error) {}
+
+    static final class Result {
+        ShiftStore.MonthlySummary total = new ShiftStore.MonthlySummary();
+        Map<String, ShiftStore.MonthlySummary> byRole = new TreeMap<>();
+        List<LocatedShift> top = new ArrayList<>();
+        List<Location> locations = new ArrayList<>();
+        long elapsedMs;
+        int parallelism;
+
+        Result merge(Result other, int topN) {
+            total.merge(other.total);
+            for (Map.Entry<String, ShiftStore.MonthlySummary> e : other.byRole.entrySet()) {
+                byRole.computeIfAbsent(e.getKey(), k -> new ShiftStore.MonthlySummary()).merge(e.getValue());
+            }
+
+            top.addAll(other.top);
+            top.sort(Comparator.comparingDouble((LocatedShift s) -> s.shift().total()).reversed());
+            if (top.size() > topN) top = new ArrayList<>(top.subList(0, topN));
+
+            locations.addAll(other.locations);
+            return this;
+        }
+    }
+}
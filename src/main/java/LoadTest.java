@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Closing-time load test: N virtual-thread clients hammer a temp database with a weighted mix of
+// store operations for a fixed duration, then report throughput, latency percentiles, errors and
+// busy/retry counts as text and JSON.
+//
+//   mvn exec:java -Dexec.mainClass=LoadTest -Dexec.args="--clients 32 --seconds 20"
+//
+// Options:
+//   --clients N            concurrent clients (default 16)
+//   --seconds S            run time (default 10)
+//   --seed-rows N          shifts loaded before the run (default 5000)
+//   --mix a=w,b=w          weights for insert, summary, list, delete (default insert=60,summary=20,list=15,delete=5)
+//   --json FILE            also write the JSON report to FILE
+//   --baseline FILE        compare against a previous JSON report; exit 2 on regression
+//   --tolerance F          allowed relative regression vs baseline (default 0.20)
+public class LoadTest {
+
+    private static final String[] OPS = {"insert", "summary", "list", "delete"};
+    private static final String[] ROLES = {"SERVER", "HOST", "TA"};
+
+    // months of history the random operations spread over
+    private static final int MONTHS = 12;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+
+        int clients = Integer.parseInt(opts.getOrDefault("clients", "16"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "10"));
+        int seedRows = Integer.parseInt(opts.getOrDefault("seed-rows", "5000"));
+        double tolerance = Double.parseDouble(opts.getOrDefault("tolerance", "0.20"));
+        int[] weights = parseMix(opts.getOrDefault("mix", "insert=60,summary=20,list=15,delete=5"));
+
+        Path dir = Files.createTempDirectory("tipcalc-load");
+        System.setProperty("tipcalc.db", dir.resolve("load.db").toString());
+        ShiftStore.initDatabase();
+        seed(seedRows);
+
+        System.out.println("Load test: " + clients + " clients, " + seconds + " s, mix " + opts.getOrDefault("mix",
+            "insert=60,summary=20,list=15,delete=5") + ", " + seedRows + " seeded shifts");
+
+        long busyBefore = Database.busyErrors();
+        long retriesBefore = Database.retries();
+
+        OpStats[][] perClient = new OpStats[clients][];
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                OpStats[] stats = newStats();
+                perClient[c] = stats;
+                pool.submit(() -> runClient(deadline, weights, stats));
+            }
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        OpStats[] total = newStats();
+        for (OpStats[] client : perClient) {
+            for (int i = 0; i < OPS.length; i++) total[i].merge(client[i]);
+        }
+
+        Report report = new Report(clients, elapsed, total,
+            Database.busyErrors() - busyBefore, Database.retries() - retriesBefore);
+
+        System.out.println(report.text());
+        String json = report.json();
+        if (opts.containsKey("json")) {
+            Files.writeString(Path.of(opts.get("json")), json);
+            System.out.println("JSON written to " + opts.get("json"));
+        } else {
+            System.out.println(json);
+        }
+
+        deleteQuietly(dir);
+
+        if (opts.containsKey("baseline")) {
+            List<String> regressions = report.compare(Files.readString(Path.of(opts.get("baseline"))), tolerance);
+            if (!regressions.isEmpty()) {
+                System.out.println("REGRESSIONS vs baseline (tolerance " + Math.round(tolerance * 100) + "%):");
+                regressions.forEach(r -> System.out.println("  " + r));
+                System.exit(2);
+            }
+            System.out.println("No regressions vs baseline.");
+        }
+    }
+
+    // ================= CLIENT =================
+
+    private static void runClient(long deadline, int[] weights, OpStats[] stats) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int totalWeight = Arrays.stream(weights).sum();
+
+        while (System.nanoTime() < deadline) {
+            int pick = rnd.nextInt(totalWeight);
+            int op = 0;
+            while (pick >= weights[op]) pick -= weights[op++];
+
+            YearMonth ym = YearMonth.now().minusMonths(rnd.nextInt(MONTHS));
+            LocalDate day = ym.atDay(1 + rnd.nextInt(ym.lengthOfMonth()));
+
+            long t0 = System.nanoTime();
+            boolean ok = true;
+            // the throwing variants, so every op's failures reach the error counts
+            try {
+                switch (op) {
+                    case 0 -> {
+                        String role = ROLES[rnd.nextInt(ROLES.length)];
+                        double tips = role.equals("TA") ? 0 : rnd.nextDouble(0, 300);
+                        ok = ShiftStore.insertShift(day, role, rnd.nextDouble(2, 10), tips, 3.00);
+                    }
+                    case 1 -> ShiftStore.monthlySummary(ym);
+                    case 2 -> ShiftStore.shiftsForMonth(ym);
+                    case 3 -> ShiftStore.deleteShifts(day);
+                    default -> throw new IllegalStateException("Unexpected op");
+                }
+            } catch (SQLException e) {
+                ok = false;
+            }
+            stats[op].record(System.nanoTime() - t0, ok);
+        }
+    }
+
+    private static void seed(int rows) throws Exception {
+        if (rows <= 0) return;
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Database.write(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO shifts (shift_date, role, hours_worked, tips, wage_rate, uuid)
+                    VALUES (?, ?, ?, ?, ?, lower(hex(randomblob(16))))
+                """)) {
+                for (int i = 0; i < rows; i++) {
+                    YearMonth ym = YearMonth.now().minusMonths(rnd.nextInt(MONTHS));
+                    String role = ROLES[rnd.nextInt(ROLES.length)];
+                    ps.setString(1, ym.atDay(1 + rnd.nextInt(ym.lengthOfMonth())).toString());
+                    ps.setString(2, role);
+                    ps.setDouble(3, rnd.nextDouble(2, 10));
+                    ps.setDouble(4, role.equals("TA") ? 0 : rnd.nextDouble(0, 300));
+                    ps.setDouble(5, 3.00);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            ShiftStats.rebuild(conn);
+            ShiftSketches.rebuild(conn);
+            return null;
+        });
+    }
+
+    // ================= STATS =================
+
+    private static OpStats[] newStats() {
+        OpStats[] s = new OpStats[OPS.length];
+        for (int i = 0; i < s.length; i++) s[i] = new OpStats();
+        return s;
+    }
+
+    // per-client, so no synchronization; merged once the run is over
+    private static final class OpStats {
+        long[] latencies = new long[1024];
+        int count;
+        long errors;
+
+        void record(long nanos, boolean ok) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            if (!ok) errors++;
+        }
+
+        void merge(OpStats other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+
+        double percentileMs(double q) {
+            if (count == 0) return 0;
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int idx = (int) Math.min(count - 1, Math.ceil(q * count) - 1);
+            return sorted[Math.max(0, idx)] / 1e6;
+        }
+    }
+
+    // ================= REPORT =================
+
+    private record Report(int clients, double seconds, OpStats[] ops, long busy, long retries) {
+
+        private static final Pattern OP_LINE = Pattern.compile(
+            "\"(\\w+)\": \\{\"count\": \\d+, \"errors\": \\d+, \"throughput\": ([\\d.]+), "
+            + "\"p50Ms\": [\\d.]+, \"p99Ms\": ([\\d.]+), \"p999Ms\": [\\d.]+\\}");
+
+        long totalOps() {
+            return Arrays.stream(ops).mapToLong(o -> o.count).sum();
+        }
+
+        long totalErrors() {
+            return Arrays.stream(ops).mapToLong(o -> o.errors).sum();
+        }
+
+        String text() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n=================== Load Test ===================\n");
+            sb.append(String.format(Locale.US, "Duration: %.1f s   Clients: %d%n", seconds, clients));
+            sb.append(String.format(Locale.US, "Total: %d ops  %.1f ops/s  errors=%d  busy=%d  retries=%d%n",
+                totalOps(), totalOps() / seconds, totalErrors(), busy, retries));
+            sb.append(String.format(Locale.US, "%-8s %9s %10s %9s %9s %9s %7s%n",
+                "op", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "errors"));
+            for (int i = 0; i < OPS.length; i++) {
+                OpStats o = ops[i];
+                sb.append(String.format(Locale.US, "%-8s %9d %10.1f %9.2f %9.2f %9.2f %7d%n",
+                    OPS[i], o.count, o.count / seconds,
+                    o.percentileMs(0.50), o.percentileMs(0.99), o.percentileMs(0.999), o.errors));
+            }
+            return sb.toString();
+        }
+
+        // one op per line so a baseline can be read back without a JSON library
+        String json() {
+            StringBuilder sb = new StringBuilder("{\n");
+            sb.append(String.format(Locale.US,
+                "  \"clients\": %d, \"seconds\": %.3f, \"totalOps\": %d, \"throughput\": %.3f, "
+                + "\"errors\": %d, \"busy\": %d, \"retries\": %d,%n",
+                clients, seconds, totalOps(), totalOps() / seconds, totalErrors(), busy, retries));
+            sb.append("  \"ops\": {\n");
+            for (int i = 0; i < OPS.length; i++) {
+                OpStats o = ops[i];
+                sb.append(String.format(Locale.US,
+                    "    \"%s\": {\"count\": %d, \"errors\": %d, \"throughput\": %.3f, "
+                    + "\"p50Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f}%s%n",
+                    OPS[i], o.count, o.errors, o.count / seconds,
+                    o.percentileMs(0.50), o.percentileMs(0.99), o.percentileMs(0.999),
+                    i < OPS.length - 1 ? "," : ""));
+            }
+            sb.append("  }\n}\n");
+            return sb.toString();
+        }
+
+        // Flags ops whose throughput fell or whose p99 rose by more than tolerance.
+        List<String> compare(String baselineJson, double tolerance) {
+            List<String> out = new ArrayList<>();
+            Matcher m = OP_LINE.matcher(baselineJson);
+            while (m.find()) {
+                int i = Arrays.asList(OPS).indexOf(m.group(1));
+                if (i < 0 || ops[i].count == 0) continue;
+
+                double baseTput = Double.parseDouble(m.group(2));
+                double baseP99 = Double.parseDouble(m.group(3));
+                double tput = ops[i].count / seconds;
+                double p99 = ops[i].percentileMs(0.99);
+
+                if (baseTput > 0 && tput < baseTput * (1 - tolerance)) {
+                    out.add(String.format(Locale.US, "%s throughput %.1f ops/s < baseline %.1f", OPS[i], tput, baseTput));
+                }
+                if (baseP99 > 0 && p99 > baseP99 * (1 + tolerance)) {
+                    out.add(String.format(Locale.US, "%s p99 %.2f ms > baseline %.2f ms", OPS[i], p99, baseP99));
+                }
+            }
+            return out;
+        }
+    }
+
+    // ================= HELPERS =================
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            String key = args[i].substring(2);
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for --" + key);
+            opts.put(key, args[++i]);
+        }
+        return opts;
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPS.length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            int i = Arrays.asList(OPS).indexOf(kv[0].trim());
+            if (i < 0 || kv.length != 2) throw new IllegalArgumentException("Bad mix entry: " + part);
+            weights[i] = Integer.parseInt(kv[1].trim());
+        }
+        if (Arrays.stream(weights).sum() <= 0) throw new IllegalArgumentException("Mix needs a positive weight");
+        return weights;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (var files = Files.list(dir)) {
+            files.forEach(f -> f.toFile().delete());
+            Files.deleteIfExists(dir);
+        } catch (IOException ignored) {}
+    }
+}
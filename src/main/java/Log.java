@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Asynchronous structured log.
+//
+// Callers hand over an event name and key/value pairs; the calling thread only stamps the time
+// and claims a slot in a lock-free ring buffer, so logging costs next to nothing on insert and
+// query paths. A daemon thread drains the buffer every few milliseconds, formats each event as
+// one logfmt line (ts=... level=... event=... key=value ..., errors with their stack trace
+// escaped onto the same line) and appends the batch to tipcalc.logFile (default tipcalc.log,
+// rotated at tipcalc.logBytes, default 5 MB, keeping tipcalc.logKeep = 5 old files). If the
+// buffer (tipcalc.logBuffer, default 8192 events) is ever full, events are dropped and counted
+// rather than making the caller wait. tipcalc.logLevel sets the threshold (default INFO).
+//
+// Warnings and errors are also passed, as one short line, to whatever the front end registered
+// with notifyWith(): the CLI prints them to stderr, the FX app puts them in its status bar.
+final class Log {
+
+    enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level THRESHOLD = level(System.getProperty("tipcalc.logLevel", "INFO"));
+    private static final long DRAIN_NANOS = 10_000_000;
+    private static final int CHUNK_CHARS = 64 * 1024;
+
+    private static final RotatingFile file = new RotatingFile(
+        Path.of(System.getProperty("tipcalc.logFile", "tipcalc.log")),
+        Long.getLong("tipcalc.logBytes", 5 << 20),
+        Integer.getInteger("tipcalc.logKeep", 5));
+
+    private static final RingBuffer<Event> buffer = new RingBuffer<>(Integer.getInteger("tipcalc.logBuffer", 8192));
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final Thread writer;
+
+    private static volatile Consumer<String> notifier;
+    private static boolean writeFailed;
+
+    static {
+        writer = new Thread(Log::run, "tipcalc-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "tipcalc-log-flush"));
+    }
+
+    private Log() {}
+
+    // ================= API =================
+
+    static void debug(String event, Object... kv) {
+        log(Level.DEBUG, event, null, kv);
+    }
+
+    static void info(String event, Object... kv) {
+        log(Level.INFO, event, null, kv);
+    }
+
+    static void warn(String event, Throwable error, Object... kv) {
+        log(Level.WARN, event, error, kv);
+    }
+
+    static void error(String event, Throwable error, Object... kv) {
+        log(Level.ERROR, event, error, kv);
+    }
+
+    static boolean enabled(Level level) {
+        return level.compareTo(THRESHOLD) >= 0;
+    }
+
+    // milliseconds since a System.nanoTime() reading, for "ms" fields
+    static double ms(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    // Where warnings and errors are shown to the user; called on the thread that logged them.
+    static void notifyWith(Consumer<String> sink) {
+        notifier = sink;
+    }
+
+    static Path path() {
+        return file.path();
+    }
+
+    // Writes out everything logged so far. Also runs at exit.
+    static void flush() {
+        drain();
+    }
+
+    private static void log(Level level, String event, Throwable error, Object[] kv) {
+        if (!enabled(level)) return;
+
+        if (!buffer.offer(new Event(System.currentTimeMillis(), level, event, Thread.currentThread().getName(), kv, error))) {
+            dropped.incrementAndGet();
+        }
+        if (level.compareTo(Level.WARN) >= 0) {
+            LockSupport.unpark(writer); // get problems on disk promptly
+            Consumer<String> sink = notifier;
+            if (sink != null) sink.accept(summary(event, error, kv));
+        }
+    }
+
+    // ================= WRITER =================
+
+    private static void run() {
+        while (true) {
+            drain();
+            LockSupport.parkNanos(DRAIN_NANOS);
+        }
+    }
+
+    // one consumer at a time: the writer thread, or flush()
+    private static synchronized void drain() {
+        StringBuilder out = new StringBuilder();
+        for (Event e; (e = buffer.poll()) != null; ) {
+            format(e, out);
+            // a backlog goes out in pieces, so files still rotate near their size limit
+            if (out.length() >= CHUNK_CHARS) write(out);
+        }
+
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            format(new Event(System.currentTimeMillis(), Level.WARN, "log_dropped", "tipcalc-log",
+                new Object[]{"count", lost}, null), out);
+        }
+        write(out);
+    }
+
+    private static void write(StringBuilder out) {
+        if (out.isEmpty()) return;
+        try {
+            file.append(out.toString());
+            writeFailed = false;
+        } catch (IOException e) {
+            // nowhere else to put it; say so once, not on every drain
+            if (!writeFailed) System.err.println("Log file " + file.path() + " not writable: " + e.getMessage());
+            writeFailed = true;
+        }
+        out.setLength(0);
+    }
+
+    // ================= FORMAT =================
+
+    private static void format(Event e, StringBuilder out) {
+        out.append("ts=").append(LocalDateTime.ofInstant(Instant.ofEpochMilli(e.millis()), ZoneId.systemDefault()))
+           .append(" level=").append(e.level())
+           .append(" event=").append(e.event());
+        field(out, "thread", e.thread());
+
+        Object[] kv = e.kv();
+        for (int i = 0; i + 1 < kv.length; i += 2) field(out, String.valueOf(kv[i]), kv[i + 1]);
+
+        if (e.error() != null) {
+            field(out, "error", e.error().getClass().getSimpleName() + ": " + e.error().getMessage());
+            StringWriter trace = new StringWriter();
+            e.error().printStackTrace(new PrintWriter(trace));
+            field(out, "stack", trace.toString().strip());
+        }
+        out.append('\n');
+    }
+
+    private static void field(StringBuilder out, String key, Object value) {
+        out.append(' ').append(key).append('=');
+        if (value instanceof Double d) {
+            out.append(Math.round(d * 1000) / 1000.0);
+            return;
+        }
+
+        String s = String.valueOf(value);
+        boolean quote = s.isEmpty();
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=' || c == '\\';
+        }
+        if (!quote) {
+            out.append(s);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> {}
+                case '\t' -> out.append("\\t");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    // "insert_failed" + error -> "Insert failed: <message>"; without an error, a "reason" value
+    // stands in for the message
+    private static String summary(String event, Throwable error, Object[] kv) {
+        String text = event.replace('_', ' ');
+        text = Character.toUpperCase(text.charAt(0)) + text.substring(1);
+        if (error != null) return text + ": " + error.getMessage();
+
+        for (int i = 0; i + 1 < kv.length; i += 2) {
+            if ("reason".equals(kv[i])) return text + ": " + kv[i + 1];
+        }
+        return text;
+    }
+
+    private static Level level(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    // ================= DATA =================
+
+    private record Event(long millis, Level level, String event, String thread, Object[] kv, Throwable error) {}
+}
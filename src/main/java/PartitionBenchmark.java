@@ -0,0 +1,121 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Current-month latency as history grows, single file vs. year partitions.
+//
+// For each history size it seeds a temp database with that many past years of shifts, then times
+// a cycle of insertShift / getMonthlySummary / fetchShiftsForMonth / deleteShiftsByDate on the
+// current month. The partitioned run seeds the same way and then goes through the migration, so
+// it also exercises the split of an existing single-file database.
+//
+//   mvn exec:java -Dexec.mainClass=PartitionBenchmark -Dexec.args="[rowsPerYear] [iterations]"
+public class PartitionBenchmark {
+
+    private static final int[] HISTORY_YEARS = {0, 2, 5, 10};
+    private static final String[] ROLES = {"SERVER", "HOST", "TA"};
+
+    public static void main(String[] args) throws Exception {
+        int rowsPerYear = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        System.out.println("Partition benchmark: " + rowsPerYear + " shifts/year, " + iterations
+            + " iterations, median microseconds per current-month operation");
+        System.out.println(String.format(Locale.US, "%-12s %6s %10s %10s %10s %10s",
+            "layout", "years", "insert", "summary", "list", "delete"));
+
+        for (int years : HISTORY_YEARS) {
+            for (boolean partitioned : new boolean[]{false, true}) {
+                Path dir = Files.createTempDirectory("tipcalc-partbench");
+                System.setProperty("tipcalc.db", dir.resolve("bench.db").toString());
+
+                ShiftStore.initDatabase();
+                seed(years, rowsPerYear);
+                if (partitioned) ShiftStore.migrateToPartitions();
+
+                long[][] t = run(iterations);
+                System.out.println(String.format(Locale.US, "%-12s %6d %10d %10d %10d %10d",
+                    partitioned ? "partitioned" : "single", years,
+                    median(t[0]), median(t[1]), median(t[2]), median(t[3])));
+
+                try (var files = Files.list(dir)) {
+                    files.forEach(f -> f.toFile().delete());
+                }
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    private static long[][] run(int iterations) {
+        long[][] t = new long[4][iterations];
+        LocalDate today = LocalDate.now();
+        YearMonth ym = YearMonth.from(today);
+
+        for (int i = 0; i < iterations; i++) {
+            long t0 = System.nanoTime();
+            ShiftStore.insertShift(today, "SERVER", 6.0, 120.0, 3.00);
+            long t1 = System.nanoTime();
+            ShiftStore.getMonthlySummary(ym);
+            long t2 = System.nanoTime();
+            ShiftStore.fetchShiftsForMonth(ym);
+            long t3 = System.nanoTime();
+            ShiftStore.deleteShiftsByDate(today);
+            long t4 = System.nanoTime();
+
+            t[0][i] = (t1 - t0) / 1000;
+            t[1][i] = (t2 - t1) / 1000;
+            t[2][i] = (t3 - t2) / 1000;
+            t[3][i] = (t4 - t3) / 1000;
+        }
+        return t;
+    }
+
+    // past years of history, plus a handful of shifts earlier this month
+    private static void seed(int years, int rowsPerYear) throws Exception {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        LocalDate today = LocalDate.now();
+
+        Database.write(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO shifts (shift_date, role, hours_worked, tips, wage_rate, uuid)
+                    VALUES (?, ?, ?, ?, ?, lower(hex(randomblob(16))))
+                """)) {
+                for (int y = 1; y <= years; y++) {
+                    LocalDate jan1 = LocalDate.of(today.getYear() - y, 1, 1);
+                    for (int i = 0; i < rowsPerYear; i++) {
+                        addRow(ps, jan1.plusDays(rnd.nextInt(jan1.lengthOfYear())), rnd);
+                    }
+                }
+                for (int d = 1; d < today.getDayOfMonth(); d++) {
+                    addRow(ps, today.withDayOfMonth(d), rnd);
+                }
+                ps.executeBatch();
+            }
+            ShiftStats.rebuild(conn);
+            ShiftSketches.rebuild(conn);
+            return null;
+        });
+    }
+
+    private static void addRow(PreparedStatement ps, LocalDate date, ThreadLocalRandom rnd) throws SQLException {
+        String role = ROLES[rnd.nextInt(ROLES.length)];
+        ps.setString(1, date.toString());
+        ps.setString(2, role);
+        ps.setDouble(3, rnd.nextDouble(2, 10));
+        ps.setDouble(4, role.equals("TA") ? 0 : rnd.nextDouble(0, 300));
+        ps.setDouble(5, 3.00);
+        ps.addBatch();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,268 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+// Payroll rules on top of the stored tips + hours * wage_rate.
+//
+// Rules are declared in a properties file (tipcalc.payRules, default pay_rules.properties):
+//
+//   overtime.weekly_hours = 40          hours per Mon-Sun week before overtime starts
+//   overtime.multiplier   = 1.5
+//   holiday.multiplier    = 1.5
+//   holiday.dates         = 01-01, 07-04, 12-25, 2026-11-26   (MM-DD recurs every year)
+//   tipout.SERVER         = 0.03        share of a role's tips paid out to hosts
+//   minimum_wage          = 7.25        per-shift top-up when pay / hours falls short
+//
+// Every key is optional; with no file at all, pay equals the stored earnings. The file is parsed
+// once into flat fields and lookup sets, and evaluate() runs one pass over shifts in (date, id)
+// order. Overtime depends on the hours before a shift in its week, so single-shift and period
+// queries both evaluate whole weeks; a shift gets the same pay whichever way it is asked for.
+//
+// Per hour the higher of the overtime and holiday multipliers applies; they don't stack.
+final class PayRules {
+
+    static final PayRules NONE = new PayRules(Double.POSITIVE_INFINITY, 1, 1, Set.of(), Set.of(), 0, 0, 0, 0);
+
+    private static PayRules current;
+
+    // compiled rules
+    private final double overtimeHours;
+    private final double overtimeMultiplier;
+    private final double holidayMultiplier;
+    private final Set<MonthDay> recurringHolidays;
+    private final Set<LocalDate> holidays;
+    private final double serverTipOut;
+    private final double hostTipOut;
+    private final double taTipOut;
+    private final double minimumWage;
+
+    private PayRules(double overtimeHours, double overtimeMultiplier, double holidayMultiplier,
+                     Set<MonthDay> recurringHolidays, Set<LocalDate> holidays,
+                     double serverTipOut, double hostTipOut, double taTipOut, double minimumWage) {
+        this.overtimeHours = overtimeHours;
+        this.overtimeMultiplier = overtimeMultiplier;
+        this.holidayMultiplier = holidayMultiplier;
+        this.recurringHolidays = recurringHolidays;
+        this.holidays = holidays;
+        this.serverTipOut = serverTipOut;
+        this.hostTipOut = hostTipOut;
+        this.taTipOut = taTipOut;
+        this.minimumWage = minimumWage;
+    }
+
+    // ================= LOADING =================
+
+    // The rules in effect, compiled on first use. A broken file is reported and ignored.
+    static synchronized PayRules current() {
+        if (current == null) {
+            Path file = Path.of(System.getProperty("tipcalc.payRules", "pay_rules.properties"));
+            try {
+                current = Files.exists(file) ? load(file) : NONE;
+            } catch (IOException | IllegalArgumentException e) {
+                Log.warn("pay_rules_ignored", e, "file", file);
+                current = NONE;
+            }
+        }
+        return current;
+    }
+
+    static PayRules load(Path file) throws IOException {
+        Properties p = new Properties();
+        try (Reader r = new FileReader(file.toFile())) {
+            p.load(r);
+        }
+
+        Set<MonthDay> recurring = new HashSet<>();
+        Set<LocalDate> dated = new HashSet<>();
+        for (String d : p.getProperty("holiday.dates", "").split(",")) {
+            String t = d.trim();
+            if (t.isEmpty()) continue;
+            try {
+                if (t.length() == 5) recurring.add(MonthDay.parse("--" + t));
+                else dated.add(LocalDate.parse(t));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("holiday.dates: bad date '" + t + "'");
+            }
+        }
+
+        return new PayRules(
+            number(p, "overtime.weekly_hours", Double.POSITIVE_INFINITY),
+            number(p, "overtime.multiplier", 1.5),
+            number(p, "holiday.multiplier", 1),
+            recurring,
+            dated,
+            fraction(p, "tipout.SERVER"),
+            fraction(p, "tipout.HOST"),
+            fraction(p, "tipout.TA"),
+            number(p, "minimum_wage", 0));
+    }
+
+    boolean isConfigured() {
+        return this != NONE;
+    }
+
+    // ================= EVALUATION =================
+
+    // Pay for each shift, in one pass. Shifts must be in (date, id) order, as ShiftStore returns
+    // them, and every week touched should be complete for overtime to come out right.
+    Pay[] evaluate(List<ShiftStore.Shift> shifts) {
+        Pay[] out = new Pay[shifts.size()];
+        LocalDate week = null;
+        double weekHours = 0;
+        ShiftStore.Shift prev = null;
+
+        for (int i = 0; i < out.length; i++) {
+            ShiftStore.Shift s = shifts.get(i);
+            if (prev != null && (s.date().isBefore(prev.date()) || s.date().equals(prev.date()) && s.id() < prev.id())) {
+                throw new IllegalArgumentException("shifts must be ordered by date, id");
+            }
+            prev = s;
+
+            LocalDate monday = weekStart(s.date());
+            if (!monday.equals(week)) {
+                week = monday;
+                weekHours = 0;
+            }
+
+            double regular = Math.max(0, Math.min(s.hours(), overtimeHours - weekHours));
+            double overtime = s.hours() - regular;
+            weekHours += s.hours();
+
+            double holiday = isHoliday(s.date()) ? holidayMultiplier : 1;
+            double wages = s.hours() * s.wage();
+
+            // each hour earns the higher multiplier; attribute the premium to whichever won
+            double regularPremium = regular * s.wage() * (holiday - 1);
+            double overtimeRate = Math.max(overtimeMultiplier, holiday);
+            double overtimePremium = overtime * s.wage() * (overtimeRate - 1);
+            double holidayPremium = regularPremium;
+            if (overtime > 0 && holiday > overtimeMultiplier) {
+                holidayPremium += overtimePremium;
+                overtimePremium = 0;
+            }
+
+            double tipOut = s.tips() * tipOutShare(s.role());
+            double earned = wages + overtimePremium + holidayPremium + s.tips() - tipOut;
+            double topUp = s.hours() > 0 ? Math.max(0, minimumWage * s.hours() - earned) : 0;
+
+            out[i] = new Pay(s.id(), wages, overtime, overtimePremium, holidayPremium, s.tips(), tipOut, topUp);
+        }
+        return out;
+    }
+
+    // Pay for one shift, stored or about to be (give an unsaved shift Integer.MAX_VALUE as its id
+    // so it sorts after the day's saved shifts, as it will once inserted).
+    Pay payFor(ShiftStore.Shift shift) throws SQLException {
+        LocalDate from = weekStart(shift.date());
+        List<ShiftStore.Shift> week = new ArrayList<>();
+        try (Connection conn = Database.open()) {
+            for (ShiftStore.Shift s : ShiftStore.fetchShifts(conn, from, from.plusDays(6))) {
+                if (s.id() != shift.id()) week.add(s);
+            }
+        }
+
+        int at = 0;
+        while (at < week.size() && (week.get(at).date().isBefore(shift.date())
+               || week.get(at).date().equals(shift.date()) && week.get(at).id() < shift.id())) {
+            at++;
+        }
+        week.add(at, shift);
+        return evaluate(week)[at];
+    }
+
+    // Pay totals for shifts dated in [from, to], evaluated over the whole weeks around them.
+    Totals payroll(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        LocalDate start = weekStart(from);
+        LocalDate end = weekStart(to).plusDays(6);
+        List<ShiftStore.Shift> shifts = ShiftStore.fetchShifts(conn, start, end);
+        Pay[] pay = evaluate(shifts);
+
+        Totals t = new Totals();
+        for (int i = 0; i < pay.length; i++) {
+            LocalDate d = shifts.get(i).date();
+            if (!d.isBefore(from) && !d.isAfter(to)) t.add(pay[i]);
+        }
+        return t;
+    }
+
+    // ================= HELPERS =================
+
+    private boolean isHoliday(LocalDate d) {
+        return holidays.contains(d) || recurringHolidays.contains(MonthDay.from(d));
+    }
+
+    private double tipOutShare(String role) {
+        return switch (role) {
+            case "SERVER" -> serverTipOut;
+            case "HOST" -> hostTipOut;
+            case "TA" -> taTipOut;
+            default -> 0;
+        };
+    }
+
+    private static LocalDate weekStart(LocalDate d) {
+        return d.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private static double number(Properties p, String key, double dflt) {
+        String v = p.getProperty(key);
+        if (v == null || v.isBlank()) return dflt;
+        try {
+            double d = Double.parseDouble(v.trim());
+            if (d < 0 || Double.isNaN(d)) throw new IllegalArgumentException(key + " must be >= 0");
+            return d;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + ": not a number '" + v.trim() + "'");
+        }
+    }
+
+    private static double fraction(Properties p, String key) {
+        double d = number(p, key, 0);
+        if (d > 1) throw new IllegalArgumentException(key + " is a fraction of tips (0 to 1)");
+        return d;
+    }
+
+    // ================= DATA =================
+
+    // wages = hours * wage_rate; premiums, tip-out and top-up come from the rules
+    record Pay(int shiftId, double wages, double overtimeHours, double overtimePremium, double holidayPremium,
+               double tips, double tipOut, double topUp) {
+        double total() {
+            return wages + overtimePremium + holidayPremium + tips - tipOut + topUp;
+        }
+    }
+
+    static final class Totals {
+        int shifts;
+        double wages, overtimeHours, overtimePremium, holidayPremium, tips, tipOut, topUp;
+
+        void add(Pay p) {
+            shifts++;
+            wages += p.wages();
+            overtimeHours += p.overtimeHours();
+            overtimePremium += p.overtimePremium();
+            holidayPremium += p.holidayPremium();
+            tips += p.tips();
+            tipOut += p.tipOut();
+            topUp += p.topUp();
+        }
+
+        double total() {
+            return wages + overtimePremium + holidayPremium + tips - tipOut + topUp;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Mergeable quantile sketch with relative-error guarantees (DDSketch-style log buckets).
+//
+// Values are counted in buckets whose bounds grow geometrically, so any quantile is answered
+// within ACCURACY of the true value using a few hundred buckets for everything between a cent
+// and a fortune. Sketches merge by adding bucket counts, and unlike KLL or t-digest a value can
+// be removed again exactly, which keeps per-month sketches correct across deletes.
+final class QuantileSketch {
+
+    // relative accuracy of returned quantiles
+    static final double ACCURACY = 0.01;
+
+    // hard cap on buckets; lowest buckets are folded together past this
+    private static final int MAX_BUCKETS = 1024;
+
+    // values at or below this count as zero (TA tips, for instance)
+    private static final double MIN_VALUE = 1e-6;
+
+    private static final double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+
+    // ================= UPDATES =================
+
+    void add(double value) {
+        if (value <= MIN_VALUE) {
+            zeroCount++;
+        } else {
+            buckets.merge(index(value), 1L, Long::sum);
+            if (buckets.size() > MAX_BUCKETS) collapseLowest();
+        }
+        count++;
+    }
+
+    void remove(double value) {
+        if (value <= MIN_VALUE) {
+            if (zeroCount == 0) return;
+            zeroCount--;
+        } else {
+            Integer i = index(value);
+            // the value may have been folded into the lowest bucket
+            if (!buckets.containsKey(i)) {
+                if (buckets.isEmpty() || i > buckets.firstKey()) return;
+                i = buckets.firstKey();
+            }
+            buckets.computeIfPresent(i, (k, c) -> c > 1 ? c - 1 : null);
+        }
+        count--;
+    }
+
+    void merge(QuantileSketch other) {
+        for (Map.Entry<Integer, Long> e : other.buckets.entrySet()) {
+            buckets.merge(e.getKey(), e.getValue(), Long::sum);
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        while (buckets.size() > MAX_BUCKETS) collapseLowest();
+    }
+
+    // ================= QUERIES =================
+
+    long count() {
+        return count;
+    }
+
+    // q in [0, 1]; NaN when empty. Nearest rank: the smallest value with at least q of the
+    // values at or below it, so p90 of {10, 50} is 50, not 10.
+    double quantile(double q) {
+        if (count == 0) return Double.NaN;
+
+        // the epsilon keeps 0.1 * 30 = 3.0000000000000004 from rounding up a whole rank
+        long rank = Math.max(0, (long) Math.ceil(q * count - 1e-9) - 1);
+        if (rank < zeroCount) return 0.0;
+
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> e : buckets.entrySet()) {
+            seen += e.getValue();
+            if (seen > rank) return value(e.getKey());
+        }
+        return value(buckets.lastKey());
+    }
+
+    // For display: the roundest amount that falls in the same bucket as value (a quantile), so it
+    // is shown no more precisely than the sketch knows it. $40 comes back as $40, not the bucket
+    // midpoint $40.05.
+    static double round(double value) {
+        if (Double.isNaN(value) || value <= MIN_VALUE) return value;
+
+        int i = index(value);
+        double lo = Math.pow(GAMMA, i - 1);   // bucket i holds (lo, hi]
+        double hi = Math.pow(GAMMA, i);
+        for (int e = (int) Math.floor(Math.log10(hi)); e >= -2; e--) {
+            double step = Math.pow(10, e);
+            double down = cents(Math.floor(value / step) * step);
+            double up = cents(down + step);
+            boolean downFits = down > lo && down <= hi;
+            boolean upFits = up > lo && up <= hi;
+            if (downFits && (!upFits || value - down <= up - value)) return down;
+            if (upFits) return up;
+        }
+        return cents(value);
+    }
+
+    private static double cents(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+
+    // ================= ENCODING =================
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + buckets.size() * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(zeroCount);
+            out.writeInt(buckets.size());
+            for (Map.Entry<Integer, Long> e : buckets.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeLong(e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static QuantileSketch fromBytes(byte[] data) {
+        QuantileSketch s = new QuantileSketch();
+        if (data == null || data.length == 0) return s;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            s.zeroCount = in.readLong();
+            s.count = s.zeroCount;
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                int key = in.readInt();
+                long c = in.readLong();
+                s.buckets.put(key, c);
+                s.count += c;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return s;
+    }
+
+    // ================= HELPERS =================
+
+    private static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    // midpoint of bucket i, which is within ACCURACY of every value it holds
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    private void collapseLowest() {
+        Map.Entry<Integer, Long> lowest = buckets.pollFirstEntry();
+        buckets.merge(buckets.firstKey(), lowest.getValue(), Long::sum);
+    }
+}
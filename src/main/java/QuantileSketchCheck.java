@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+// Self-check for QuantileSketch on small and known samples, where rank and rounding slips show.
+// Exits non-zero if any quantile misses the exact nearest-rank value by more than the sketch's
+// accuracy, or a displayed value isn't rounded as expected.
+//
+//   mvn exec:java -Dexec.mainClass=QuantileSketchCheck
+public class QuantileSketchCheck {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        expect("p90 of {10, 50}", sketch(10, 50).quantile(0.90), 50);
+        expect("p50 of {10, 50}", sketch(10, 50).quantile(0.50), 10);
+        expect("p10 of {10, 50}", sketch(10, 50).quantile(0.10), 10);
+        expect("p90 of {25}", sketch(25).quantile(0.90), 25);
+        expect("p50 of {0, 0, 30}", sketch(0, 0, 30).quantile(0.50), 0);
+        expect("p90 of {0, 0, 30}", sketch(0, 0, 30).quantile(0.90), 30);
+
+        double[] hundred = new double[100];
+        for (int i = 0; i < 100; i++) hundred[i] = i + 1;
+        for (double q : new double[]{0, 0.10, 0.30, 0.50, 0.90, 1}) {
+            expect("p" + Math.round(q * 100) + " of 1..100", sketch(hundred).quantile(q), nearestRank(hundred, q));
+        }
+
+        QuantileSketch removed = sketch(10, 50, 500);
+        removed.remove(500);
+        expect("p90 of {10, 50} after removing 500", removed.quantile(0.90), 50);
+
+        // a round amount is shown as itself, not as its bucket midpoint ($40.05, $120.31)
+        for (double v : new double[]{10, 40, 120, 2.5, 0.5}) {
+            double shown = QuantileSketch.round(sketch(v).quantile(0.5));
+            if (shown != v) fail("shown value of " + v, shown, v);
+        }
+        expect("shown value of 8.75", QuantileSketch.round(sketch(8.75).quantile(0.5)), 8.75);
+
+        System.out.println(failures == 0 ? "OK" : failures + " check(s) failed");
+        if (failures > 0) System.exit(1);
+    }
+
+    private static QuantileSketch sketch(double... values) {
+        QuantileSketch s = new QuantileSketch();
+        for (double v : values) s.add(v);
+        return s;
+    }
+
+    private static double nearestRank(double[] values, double q) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(q * sorted.length) - 1)];
+    }
+
+    private static void expect(String what, double actual, double expected) {
+        if (Math.abs(actual - expected) > QuantileSketch.ACCURACY * expected) fail(what, actual, expected);
+    }
+
+    private static void fail(String what, double actual, double expected) {
+        failures++;
+        System.out.println("FAIL " + what + ": got " + actual + ", expected " + expected);
+    }
+}
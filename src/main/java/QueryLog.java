@@ -0,0 +1,275 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Timing for every SQL statement, a slow-query log, and query-plan capture for `explain`.
+//
+// Database hands out connections wrapped here, so every statement from the persistence code is
+// timed without touching its call sites. Only execute* is timed (for a query that includes
+// stepping to the first row); result sets are the driver's own, so bulk reads pay nothing per
+// row. Statements slower than tipcalc.slowQueryMs (default 100) go to the log as slow_query
+// events with their parameters and, when the connection is not inside a transaction, their
+// EXPLAIN QUERY PLAN output. Per-statement totals are kept for the session.
+final class QueryLog {
+
+    private static final long SLOW_NANOS = Long.getLong("tipcalc.slowQueryMs", 100) * 1_000_000;
+    private static final int MAX_TRACKED = 1000;
+
+    private static final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+    // set while capture() runs on this thread; every statement's plan is collected into it
+    private static final ThreadLocal<List<Trace>> capture = new ThreadLocal<>();
+
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?(\\w+\\.)?shifts\\b(?!.*\\bINDEX\\b)");
+    private static final Pattern PREDICATE = Pattern.compile(
+        "\\b(shift_date|role|hours_worked|tips|wage_rate)\\s*(=|<=|>=|<|>|BETWEEN)\\s*\\?", Pattern.CASE_INSENSITIVE);
+
+    private QueryLog() {}
+
+    // ================= WRAPPING =================
+
+    static Connection wrap(Connection conn) {
+        return proxy(Connection.class, new ConnectionHandler(conn));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler h) {
+        return type.cast(Proxy.newProxyInstance(QueryLog.class.getClassLoader(), new Class<?>[]{type}, h));
+    }
+
+    private static Object call(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+
+        ConnectionHandler(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            Object result = call(conn, m, args);
+            return switch (m.getName()) {
+                case "prepareStatement" ->
+                    proxy(PreparedStatement.class, new StatementHandler(conn, (Statement) result, (String) args[0]));
+                case "createStatement" -> proxy(Statement.class, new StatementHandler(conn, (Statement) result, null));
+                default -> result;
+            };
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Connection conn;
+        private final Statement stmt;
+        private final String preparedSql;
+        private final Map<Integer, Object> params = new HashMap<>();
+        private int batched;
+
+        StatementHandler(Connection conn, Statement stmt, String preparedSql) {
+            this.conn = conn;
+            this.stmt = stmt;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String name = m.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer i
+                    && m.getDeclaringClass() == PreparedStatement.class) {
+                params.put(i, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                params.clear();
+            } else if (name.equals("addBatch")) {
+                batched++;
+            }
+            if (!name.startsWith("execute")) return call(stmt, m, args);
+
+            String sql = preparedSql != null ? preparedSql : (String) args[0];
+            Object[] bound = boundParams();
+            int batch = name.equals("executeBatch") ? batched : 0;
+            if (batch > 0) batched = 0;
+
+            long start = System.nanoTime();
+            Object result = call(stmt, m, args);
+            finish(conn, sql, bound, batch, start);
+            return result;
+        }
+
+        private Object[] boundParams() {
+            int n = params.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            Object[] out = new Object[n];
+            for (int i = 1; i <= n; i++) out[i - 1] = params.get(i);
+            return out;
+        }
+    }
+
+    // ================= RECORDING =================
+
+    private static void finish(Connection conn, String sql, Object[] params, int batch, long start) {
+        long nanos = System.nanoTime() - start;
+        String text = oneLine(sql);
+
+        // PRAGMAs are housekeeping, not queries to tune; the change feed alone polls data_version
+        // every interval, which would crowd the per-statement totals
+        if (!text.regionMatches(true, 0, "PRAGMA", 0, 6)) {
+            Stat s = stats.get(text);
+            if (s == null && stats.size() < MAX_TRACKED) s = stats.computeIfAbsent(text, k -> new Stat());
+            if (s != null) s.add(nanos);
+        }
+
+        List<Trace> traces = capture.get();
+        boolean slow = nanos >= SLOW_NANOS;
+        if (!slow && traces == null) return;
+
+        // the slow log doesn't keep a transaction (perhaps holding the write lock) open for a plan
+        List<String> plan = traces != null || !inTransaction(conn) ? plan(conn, sql, params) : null;
+        if (traces != null) traces.add(new Trace(text, Arrays.asList(params), batch, nanos, plan));
+        if (slow) {
+            Log.info("slow_query", "ms", nanos / 1e6, "batch", batch, "sql", text, "params", Arrays.asList(params),
+                "plan", plan == null ? "(skipped inside a transaction)"
+                    : String.join(" | ", plan.stream().map(String::strip).toList()));
+        }
+    }
+
+    private static boolean inTransaction(Connection conn) {
+        try {
+            return !conn.getAutoCommit();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static List<String> plan(Connection conn, String sql, Object[] params) {
+        List<String> lines = new ArrayList<>();
+        // conn is the unwrapped connection, so this doesn't time (or explain) itself
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.length && i < ps.getParameterMetaData().getParameterCount(); i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            Map<Integer, Integer> depth = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int d = depth.getOrDefault(rs.getInt("parent"), -1) + 1;
+                    depth.put(rs.getInt("id"), d);
+                    lines.add("  ".repeat(d) + rs.getString("detail"));
+                }
+            }
+        } catch (SQLException e) {
+            lines.add("(no plan: " + e.getMessage() + ")");
+        }
+        return lines;
+    }
+
+    private static String oneLine(String sql) {
+        return sql.strip().replaceAll("\\s+", " ");
+    }
+
+    // ================= EXPLAIN =================
+
+    // Runs work with plan capture on, returning every statement it issued, in order.
+    static List<Trace> capture(Runnable work) {
+        List<Trace> traces = new ArrayList<>();
+        capture.set(traces);
+        try {
+            work.run();
+        } finally {
+            capture.remove();
+        }
+        return traces;
+    }
+
+    static boolean isFullScanOfShifts(Trace t) {
+        for (String line : t.plan()) {
+            if (FULL_SCAN.matcher(line.strip()).find()) return true;
+        }
+        return false;
+    }
+
+    // Index that would let the statement seek instead of scanning shifts: its equality columns
+    // first, then the first range column, in the order the WHERE clause uses them. Null if the
+    // statement has no usable predicate.
+    static String suggestIndex(Trace t) {
+        int where = t.sql().toUpperCase().indexOf(" WHERE ");
+        if (where < 0) return null;
+
+        Set<String> equality = new LinkedHashSet<>();
+        String range = null;
+        Matcher m = PREDICATE.matcher(t.sql().substring(where));
+        while (m.find()) {
+            String col = m.group(1).toLowerCase();
+            if (m.group(2).equals("=")) equality.add(col);
+            else if (range == null) range = col;
+        }
+        if (range != null) equality.remove(range);
+
+        List<String> cols = new ArrayList<>(equality);
+        if (range != null) cols.add(range);
+        if (cols.isEmpty()) return null;
+
+        // same name as the schema's own date index, so applying it can't duplicate that one
+        String name = cols.equals(List.of("shift_date")) ? "idx_shifts_date" : "idx_shifts_" + String.join("_", cols);
+        return "CREATE INDEX IF NOT EXISTS " + name + " ON shifts (" + String.join(", ", cols) + ")";
+    }
+
+    static List<Map.Entry<String, Stat>> slowest(int n) {
+        List<Map.Entry<String, Stat>> all = new ArrayList<>(stats.entrySet());
+        all.sort(Comparator.comparingLong((Map.Entry<String, Stat> e) -> e.getValue().totalNanos()).reversed());
+        return all.subList(0, Math.min(n, all.size()));
+    }
+
+    static long slowThresholdMs() {
+        return SLOW_NANOS / 1_000_000;
+    }
+
+    // ================= DATA =================
+
+    record Trace(String sql, List<Object> params, int batch, long nanos, List<String> plan) {}
+
+    static final class Stat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void add(long n) {
+            count.increment();
+            nanos.add(n);
+            max.accumulateAndGet(n, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long totalNanos() {
+            return nanos.sum();
+        }
+
+        long maxNanos() {
+            return max.get();
+        }
+    }
+}
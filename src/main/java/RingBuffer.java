@@ -0,0 +1,64 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded lock-free queue for many producers and one consumer.
+//
+// Each slot carries a sequence number saying whose turn it is: a producer claims the next
+// position with one CAS, fills the slot and publishes it by bumping the slot's sequence; the
+// consumer takes a slot only once it is published. offer() never blocks or spins on a full
+// buffer; it returns false and the caller decides what to drop.
+final class RingBuffer<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();  // next position to claim
+    private long head;                                 // next position to take; consumer only
+
+    // capacity is rounded up to a power of two
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    // Any thread. False when the buffer is full.
+    boolean offer(T item) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) (pos & mask);
+            long diff = sequence.getAcquire(i) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[i] = item;
+                    sequence.setRelease(i, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // the consumer hasn't freed this slot from the previous lap yet
+            } else {
+                pos = tail.get(); // another producer took pos; try the next one
+            }
+        }
+    }
+
+    // Consumer thread only. Null when nothing is published yet.
+    @SuppressWarnings("unchecked")
+    T poll() {
+        int i = (int) (head & mask);
+        if (sequence.getAcquire(i) != head + 1) return null;
+
+        T item = (T) slots[i];
+        slots[i] = null;
+        sequence.setRelease(i, head + slots.length);
+        head++;
+        return item;
+    }
+}
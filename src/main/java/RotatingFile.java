@@ -0,0 +1,43 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Append-only text file that rolls over by size: name -> name.1 -> ... -> name.<keep>, oldest
+// dropped. Appends are synchronized, so several threads can share one instance.
+final class RotatingFile {
+
+    private final Path path;
+    private final long maxBytes;
+    private final int keep;
+
+    RotatingFile(Path path, long maxBytes, int keep) {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.keep = Math.max(1, keep);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    synchronized void append(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (Files.exists(path) && Files.size(path) + bytes.length > maxBytes) rotate();
+        Files.write(path, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(sibling(keep));
+        for (int i = keep - 1; i >= 1; i--) {
+            if (Files.exists(sibling(i))) Files.move(sibling(i), sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(path, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path sibling(int n) {
+        return path.resolveSibling(path.getFileName() + "." + n);
+    }
+}
@@ -0,0 +1,208 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Change log of shift inserts/deletes plus a cheap watcher for writes from any process.
+//
+// Every write appends its rows (with their values, clock times included) to shift_changes in
+// the same transaction, so each change carries a sequence number. The watcher keeps one idle
+// connection and polls PRAGMA data_version, which only moves when another connection commits;
+// only then does it read the rows past the last sequence it delivered. Listeners get the deltas,
+// never a full reload, unless the log has been pruned past what they last saw.
+final class ShiftChangeFeed implements AutoCloseable {
+
+    // how many log entries to keep; older ones are pruned as new ones arrive
+    private static final int RETAIN = 10_000;
+
+    enum Op { INSERT, DELETE }
+
+    // start/end are null for a shift saved without clock times
+    record Change(long seq, Op op, ShiftStore.Shift shift, LocalDateTime start, LocalDateTime end) {}
+
+    // resync = true means changes were missed and the listener should reload from scratch
+    record Batch(List<Change> changes, boolean resync) {}
+
+    private final Connection conn;
+    private final ScheduledExecutorService poller;
+    private final Consumer<Batch> listener;
+
+    private long lastSeq;
+    private long lastDataVersion = -1;
+
+    // ================= LOG =================
+
+    static void init(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS shift_changes (
+                    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                    op TEXT NOT NULL,
+                    shift_id INTEGER NOT NULL,
+                    shift_date TEXT NOT NULL,
+                    role TEXT NOT NULL,
+                    hours_worked REAL NOT NULL,
+                    tips REAL NOT NULL,
+                    wage_rate REAL NOT NULL,
+                    start_time TEXT,
+                    end_time TEXT
+                );
+            """);
+            // logs created before clock times were recorded
+            if (!ShiftSync.columns(conn, "main", "shift_changes").contains("start_time")) {
+                stmt.execute("ALTER TABLE shift_changes ADD COLUMN start_time TEXT");
+                stmt.execute("ALTER TABLE shift_changes ADD COLUMN end_time TEXT");
+            }
+        }
+    }
+
+    // start/end are the row's stored ISO times, or null
+    static void record(Connection conn, Op op, ShiftStore.Shift s, String start, String end) throws SQLException {
+        String sql = """
+            INSERT INTO shift_changes
+                (op, shift_id, shift_date, role, hours_worked, tips, wage_rate, start_time, end_time)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, op.name());
+            ps.setInt(2, s.id());
+            ps.setString(3, s.date().toString());
+            ps.setString(4, s.role());
+            ps.setDouble(5, s.hours());
+            ps.setDouble(6, s.tips());
+            ps.setDouble(7, s.wage());
+            ps.setString(8, start);
+            ps.setString(9, end);
+            ps.executeUpdate();
+        }
+        long seq = ShiftStore.lastInsertId(conn);
+
+        // amortised pruning: one cheap rowid range delete every thousand entries
+        if (seq % 1000 == 0 && seq > RETAIN) {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM shift_changes WHERE seq <= ?")) {
+                ps.setLong(1, seq - RETAIN);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    // ================= WATCHER =================
+
+    // Starts watching from the current end of the log; listener runs on the poller thread.
+    static ShiftChangeFeed watch(long intervalMs, Consumer<Batch> listener) throws SQLException {
+        return new ShiftChangeFeed(Database.open(), intervalMs, listener);
+    }
+
+    private ShiftChangeFeed(Connection conn, long intervalMs, Consumer<Batch> listener) throws SQLException {
+        this.conn = conn;
+        this.listener = listener;
+        this.lastSeq = maxSeq();
+        this.lastDataVersion = dataVersion();
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shift-change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::poll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            long version = dataVersion();
+            if (version == lastDataVersion) return;
+            lastDataVersion = version;
+
+            Batch batch = readSince(lastSeq);
+            if (batch.changes().isEmpty() && !batch.resync()) return;
+            if (!batch.changes().isEmpty()) {
+                lastSeq = batch.changes().get(batch.changes().size() - 1).seq();
+            } else {
+                lastSeq = maxSeq();
+            }
+            listener.accept(batch);
+        } catch (SQLException e) {
+            Log.error("change_feed_failed", e, "last_seq", lastSeq);
+        } catch (RuntimeException e) {
+            // never let one bad batch kill the scheduled poll
+            Log.error("change_feed_listener_failed", e, "last_seq", lastSeq);
+        }
+    }
+
+    private Batch readSince(long seq) throws SQLException {
+        // a gap means entries we never saw were pruned
+        boolean resync = false;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MIN(seq) FROM shift_changes")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long min = rs.getLong(1);
+                    resync = !rs.wasNull() && min > seq + 1;
+                }
+            }
+        }
+
+        String sql = """
+            SELECT seq, op, shift_id, shift_date, role, hours_worked, tips, wage_rate, start_time, end_time
+            FROM shift_changes
+            WHERE seq > ?
+            ORDER BY seq
+        """;
+        List<Change> changes = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, seq);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ShiftStore.Shift s = new ShiftStore.Shift(
+                        rs.getInt(3),
+                        LocalDate.parse(rs.getString(4)),
+                        rs.getString(5),
+                        rs.getDouble(6),
+                        rs.getDouble(7),
+                        rs.getDouble(8)
+                    );
+                    changes.add(new Change(rs.getLong(1), Op.valueOf(rs.getString(2)), s,
+                        time(rs.getString(9)), time(rs.getString(10))));
+                }
+            }
+        }
+        return new Batch(changes, resync);
+    }
+
+    private static LocalDateTime time(String iso) {
+        return iso == null ? null : LocalDateTime.parse(iso);
+    }
+
+    private long maxSeq() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM shift_changes")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private long dataVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        try {
+            poller.awaitTermination(1, TimeUnit.SECONDS);
+            conn.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException ignored) {}
+    }
+}
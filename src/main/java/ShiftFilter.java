@@ -0,0 +1,15 @@
+import java.time.LocalDate;
+
+// Filter-bar predicates over shifts; a null role or bound means "no restriction". Ranges are inclusive.
+record ShiftFilter(String role,
+                   Double tipsMin, Double tipsMax,
+                   Double hoursMin, Double hoursMax,
+                   LocalDate dateFrom, LocalDate dateTo) {
+
+    static final ShiftFilter NONE = new ShiftFilter(null, null, null, null, null, null, null);
+
+    boolean isEmpty() {
+        return role == null && tipsMin == null && tipsMax == null
+            && hoursMin == null && hoursMax == null && dateFrom == null && dateTo == null;
+    }
+}
@@ -0,0 +1,280 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+// Column index over a loaded list of shifts, for interactive filtering.
+//
+// Each numeric column is kept as a primitive array plus a permutation sorting it, and each role
+// as a bitset, all built once per load (off the FX thread). A query binary-searches every range
+// predicate, walks only the candidates of the most selective one, checks the remaining predicates
+// against the column arrays, and returns matching row positions in their original order. Cost is
+// O(log n + k) for k candidates plus one bitset pass, never a full scan of row objects.
+//
+// Live changes are patched in with insert()/remove(), which keep positions aligned with the row
+// list: a binary search and a few primitive array moves per change, no parsing or re-sorting.
+final class ShiftIndex {
+
+    private int size;
+    private byte[] roleCodes;
+    private double[] tips;
+    private double[] hours;
+    private long[] days;             // epoch days
+
+    private final Map<String, Byte> codes = new HashMap<>();
+    private final Map<String, BitSet> byRole = new HashMap<>();
+    private boolean roleBitsStale;   // after a patch; rebuilt from roleCodes on the next query
+    private final SortedColumn tipsSorted;
+    private final SortedColumn hoursSorted;
+    private final SortedColumn daysSorted;
+
+    ShiftIndex(String[] roles, double[] tips, double[] hours, long[] days) {
+        this.size = roles.length;
+        this.tips = tips;
+        this.hours = hours;
+        this.days = days;
+
+        roleCodes = new byte[size];
+        for (int i = 0; i < size; i++) roleCodes[i] = code(roles[i]);
+        fillRoleBits();
+
+        double[] dayKeys = new double[size];
+        for (int i = 0; i < size; i++) dayKeys[i] = days[i];
+
+        tipsSorted = new SortedColumn(tips);
+        hoursSorted = new SortedColumn(hours);
+        daysSorted = new SortedColumn(dayKeys);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // ================= UPDATES =================
+
+    // A row inserted at position pos; rows from pos on move up one.
+    void insert(int pos, String role, double tip, double hour, long day) {
+        if (size == tips.length) {
+            int capacity = Math.max(16, size * 3 / 2);
+            roleCodes = Arrays.copyOf(roleCodes, capacity);
+            tips = Arrays.copyOf(tips, capacity);
+            hours = Arrays.copyOf(hours, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+        int tail = size - pos;
+        System.arraycopy(roleCodes, pos, roleCodes, pos + 1, tail);
+        System.arraycopy(tips, pos, tips, pos + 1, tail);
+        System.arraycopy(hours, pos, hours, pos + 1, tail);
+        System.arraycopy(days, pos, days, pos + 1, tail);
+        roleCodes[pos] = code(role);
+        tips[pos] = tip;
+        hours[pos] = hour;
+        days[pos] = day;
+        size++;
+
+        tipsSorted.insert(pos, tip);
+        hoursSorted.insert(pos, hour);
+        daysSorted.insert(pos, day);
+        roleBitsStale = true;
+    }
+
+    // The row at position pos removed; rows after it move down one.
+    void remove(int pos) {
+        tipsSorted.remove(pos, tips[pos]);
+        hoursSorted.remove(pos, hours[pos]);
+        daysSorted.remove(pos, days[pos]);
+
+        int tail = size - pos - 1;
+        System.arraycopy(roleCodes, pos + 1, roleCodes, pos, tail);
+        System.arraycopy(tips, pos + 1, tips, pos, tail);
+        System.arraycopy(hours, pos + 1, hours, pos, tail);
+        System.arraycopy(days, pos + 1, days, pos, tail);
+        size--;
+        roleBitsStale = true;
+    }
+
+    // Positions (ascending) of rows matching f.
+    int[] match(ShiftFilter f) {
+        if (f.isEmpty()) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) all[i] = i;
+            return all;
+        }
+
+        // pick the predicate with the fewest candidates to drive the walk
+        int[] best = null;
+        SortedColumn bestCol = null;
+
+        for (Object[] p : new Object[][]{
+                {tipsSorted, f.tipsMin(), f.tipsMax()},
+                {hoursSorted, f.hoursMin(), f.hoursMax()},
+                {daysSorted, toKey(f.dateFrom()), toKey(f.dateTo())}}) {
+            Double lo = (Double) p[1];
+            Double hi = (Double) p[2];
+            if (lo == null && hi == null) continue;
+
+            SortedColumn col = (SortedColumn) p[0];
+            int[] range = col.range(lo, hi);
+            if (best == null || range[1] - range[0] < best[1] - best[0]) {
+                best = range;
+                bestCol = col;
+            }
+        }
+
+        BitSet roleBits = null;
+        int role = -1;
+        if (f.role() != null) {
+            if (roleBitsStale) fillRoleBits();
+            if (!codes.containsKey(f.role())) return new int[0];
+            role = codes.get(f.role());
+            roleBits = byRole.get(f.role());
+            if (best == null || roleBits.cardinality() < best[1] - best[0]) {
+                bestCol = null;
+            }
+        }
+
+        BitSet out = new BitSet(size);
+        if (bestCol != null) {
+            for (int p = best[0]; p < best[1]; p++) {
+                int i = bestCol.order[p];
+                if (matches(f, role, i)) out.set(i);
+            }
+        } else {
+            for (int i = roleBits.nextSetBit(0); i >= 0; i = roleBits.nextSetBit(i + 1)) {
+                if (matches(f, role, i)) out.set(i);
+            }
+        }
+        return out.stream().toArray();
+    }
+
+    // role is the filter's role code, or -1 for any
+    private boolean matches(ShiftFilter f, int role, int i) {
+        if (role >= 0 && roleCodes[i] != role) return false;
+        if (f.tipsMin() != null && tips[i] < f.tipsMin()) return false;
+        if (f.tipsMax() != null && tips[i] > f.tipsMax()) return false;
+        if (f.hoursMin() != null && hours[i] < f.hoursMin()) return false;
+        if (f.hoursMax() != null && hours[i] > f.hoursMax()) return false;
+        if (f.dateFrom() != null && days[i] < f.dateFrom().toEpochDay()) return false;
+        return f.dateTo() == null || days[i] <= f.dateTo().toEpochDay();
+    }
+
+    private byte code(String role) {
+        return codes.computeIfAbsent(role, k -> (byte) codes.size());
+    }
+
+    private void fillRoleBits() {
+        BitSet[] bits = new BitSet[codes.size()];
+        for (int c = 0; c < bits.length; c++) bits[c] = new BitSet(size);
+        for (int i = 0; i < size; i++) bits[roleCodes[i]].set(i);
+
+        byRole.clear();
+        for (Map.Entry<String, Byte> e : codes.entrySet()) byRole.put(e.getKey(), bits[e.getValue()]);
+        roleBitsStale = false;
+    }
+
+    private static Double toKey(LocalDate d) {
+        return d == null ? null : (double) d.toEpochDay();
+    }
+
+    // ================= SORTED COLUMN =================
+
+    private static final class SortedColumn {
+        double[] sorted;
+        int[] order;
+        int size;
+
+        SortedColumn(double[] values) {
+            int n = values.length;
+            order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            sortIndices(order, values);
+
+            sorted = new double[n];
+            for (int i = 0; i < n; i++) sorted[i] = values[order[i]];
+            size = n;
+        }
+
+        // [from, to) positions in sorted order whose values fall in [lo, hi]
+        int[] range(Double lo, Double hi) {
+            int from = lo == null ? 0 : lowerBound(lo);
+            int to = hi == null ? size : upperBound(hi);
+            return new int[]{from, Math.max(from, to)};
+        }
+
+        void insert(int pos, double v) {
+            for (int p = 0; p < size; p++) {
+                if (order[p] >= pos) order[p]++;
+            }
+            if (size == sorted.length) {
+                int capacity = Math.max(16, size * 3 / 2);
+                sorted = Arrays.copyOf(sorted, capacity);
+                order = Arrays.copyOf(order, capacity);
+            }
+            int at = upperBound(v);
+            System.arraycopy(sorted, at, sorted, at + 1, size - at);
+            System.arraycopy(order, at, order, at + 1, size - at);
+            sorted[at] = v;
+            order[at] = pos;
+            size++;
+        }
+
+        // v is the value stored for pos, which narrows the search to its run of equal keys
+        void remove(int pos, double v) {
+            int at = lowerBound(v);
+            while (order[at] != pos) at++;
+            System.arraycopy(sorted, at + 1, sorted, at, size - at - 1);
+            System.arraycopy(order, at + 1, order, at, size - at - 1);
+            size--;
+            for (int p = 0; p < size; p++) {
+                if (order[p] > pos) order[p]--;
+            }
+        }
+
+        private int lowerBound(double v) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] < v) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private int upperBound(double v) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] <= v) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // Sorts row positions by key without boxing: each key is narrowed to a float, made
+        // sortable as a signed int and packed above its position, so one primitive long sort
+        // orders both. Distinct doubles that round to the same float may come out swapped, and
+        // an insertion pass over the (nearly sorted) result puts them back in exact order.
+        private static void sortIndices(int[] idx, double[] key) {
+            int n = idx.length;
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                int bits = Float.floatToIntBits((float) key[i]);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                packed[i] = ((long) bits << 32) | i;
+            }
+            Arrays.sort(packed);
+            for (int p = 0; p < n; p++) idx[p] = (int) packed[p];
+
+            for (int p = 1; p < n; p++) {
+                int cur = idx[p];
+                int q = p - 1;
+                while (q >= 0 && key[idx[q]] > key[cur]) {
+                    idx[q + 1] = idx[q];
+                    q--;
+                }
+                idx[q + 1] = cur;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+// Interval index over shifts that have start/end times, for "who was on between 7 and 9 pm"
+// and the hour-of-day heatmap.
+//
+// Shifts are sorted by start into flat arrays, read as an implicit balanced tree (each range's
+// middle element is its root) where every node also keeps the latest end in its subtree. An
+// overlap query skips any subtree that ends before the window and everything right of a node
+// that starts after it, so it costs O(log n) plus the matches. Times are local wall-clock
+// minutes; a shift past midnight simply ends on the next day.
+final class ShiftIntervals {
+
+    private final Interval[] items;    // sorted by start
+    private final long[] start;        // minutes, half-open [start, end)
+    private final long[] end;
+    private final long[] maxEnd;       // latest end in the subtree rooted at each position
+
+    private ShiftIntervals(List<Interval> intervals) {
+        int n = intervals.size();
+
+        // sort by start as packed (minute, position) longs rather than comparing objects
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) order[i] = minutes(intervals.get(i).start()) << 32 | i;
+        Arrays.sort(order);
+
+        items = new Interval[n];
+        start = new long[n];
+        end = new long[n];
+        maxEnd = new long[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = intervals.get((int) order[i]);
+            start[i] = order[i] >>> 32;
+            end[i] = minutes(items[i].end());
+        }
+        fillMaxEnd(0, n);
+    }
+
+    // ================= LOADING =================
+
+    // Timed shifts dated in [from, to], plus the day before so overnight shifts running into
+    // `from` are found too. Shifts saved without times are left out.
+    static ShiftIntervals load(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        String sql = """
+            SELECT id, role, start_time, end_time, hours_worked, tips, wage_rate
+            FROM %s
+            WHERE shift_date BETWEEN ? AND ? AND start_time IS NOT NULL AND end_time IS NOT NULL
+        """.formatted(ShiftPartitions.source(conn, from.minusDays(1), to));
+
+        List<Interval> out = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, from.minusDays(1).toString());
+            ps.setString(2, to.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LocalDateTime s = LocalDateTime.parse(rs.getString(3));
+                    LocalDateTime e = LocalDateTime.parse(rs.getString(4));
+                    if (!e.isAfter(s)) continue; // nothing to place on the clock
+                    double earnings = rs.getDouble(6) + rs.getDouble(5) * rs.getDouble(7);
+                    out.add(new Interval(rs.getInt(1), rs.getString(2), s, e, earnings));
+                }
+            }
+        }
+        return new ShiftIntervals(out);
+    }
+
+    int size() {
+        return items.length;
+    }
+
+    // ================= QUERIES =================
+
+    // Shifts overlapping [from, to), by start time.
+    List<Interval> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<Interval> out = new ArrayList<>();
+        visit(0, items.length, minutes(from), minutes(to), i -> out.add(items[i]));
+        return out;
+    }
+
+    List<Interval> activeAt(LocalDateTime t) {
+        return overlapping(t, t.plusMinutes(1));
+    }
+
+    // Each shift's earnings spread evenly over its minutes and summed into (weekday, hour-of-day)
+    // cells over the days [from, to], along with the staffed hours in each cell.
+    Heatmap heatmap(LocalDate from, LocalDate to) {
+        Heatmap map = new Heatmap();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            int day = d.getDayOfWeek().getValue() - 1;
+            long midnight = minutes(d.atStartOfDay());
+
+            for (int h = 0; h < 24; h++) {
+                long lo = midnight + h * 60L;
+                long hi = lo + 60;
+                int hour = h;
+                visit(0, items.length, lo, hi, i -> {
+                    long overlap = Math.min(end[i], hi) - Math.max(start[i], lo);
+                    map.earnings[day][hour] += items[i].earnings() * overlap / (end[i] - start[i]);
+                    map.staffHours[day][hour] += overlap / 60.0;
+                });
+            }
+        }
+        return map;
+    }
+
+    // ================= TREE =================
+
+    private long fillMaxEnd(int lo, int hi) {
+        if (lo >= hi) return Long.MIN_VALUE;
+        int mid = (lo + hi) >>> 1;
+        maxEnd[mid] = Math.max(end[mid], Math.max(fillMaxEnd(lo, mid), fillMaxEnd(mid + 1, hi)));
+        return maxEnd[mid];
+    }
+
+    // positions in [lo, hi) of the array whose interval overlaps [from, to), in start order
+    private void visit(int lo, int hi, long from, long to, IntConsumer hit) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (maxEnd[mid] <= from) return;           // the whole subtree ended before the window
+
+        visit(lo, mid, from, to, hit);
+        if (start[mid] >= to) return;              // this and everything right start after it
+        if (end[mid] > from) hit.accept(mid);
+        visit(mid + 1, hi, from, to, hit);
+    }
+
+    static long minutes(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    // ================= DATA =================
+
+    // earnings = tips + hours * wage_rate, as stored
+    record Interval(int shiftId, String role, LocalDateTime start, LocalDateTime end, double earnings) {}
+
+    static final class Heatmap {
+        final double[][] earnings = new double[7][24];     // [Mon..Sun][hour]
+        final double[][] staffHours = new double[7][24];
+    }
+}
@@ -0,0 +1,281 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Optional year partitioning of the shifts table.
+//
+// Once migrated, every year's shifts live in their own SQLite file next to the main database
+// (tip_calculator-2024.db, ...), registered in shift_partitions. The main file keeps the
+// statistics, sketches and change log; its own shifts table stays empty. Connections ATTACH
+// only the years a statement needs: writes route to the partition of the shift's year, and range
+// queries UNION ALL just the partitions overlapping the range. Older years can be marked
+// read-only, so they are attached with mode=ro and never touched by writes.
+//
+// A database with no registered partitions behaves exactly as before.
+final class ShiftPartitions {
+
+    private ShiftPartitions() {}
+
+    // ================= SCHEMA =================
+
+    static void init(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS shift_partitions (
+                    year INTEGER PRIMARY KEY,
+                    file TEXT NOT NULL,
+                    read_only INTEGER NOT NULL DEFAULT 0
+                );
+            """);
+        }
+    }
+
+    static boolean isPartitioned(Connection conn) throws SQLException {
+        // files written before partitioning existed have no registry at all
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT 1 FROM main.sqlite_master WHERE type = 'table' AND name = 'shift_partitions'")) {
+            if (!rs.next()) return false;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM shift_partitions)")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    // ================= ROUTING =================
+
+    // Table holding shifts dated `date`, attaching its partition (and creating it when `create`).
+    // Returns null if the year has no partition and create is false. The first call for a year
+    // must run outside a transaction; see Database.write(setup, work).
+    static String tableForWrite(Connection conn, LocalDate date, boolean create) throws SQLException {
+        if (!isPartitioned(conn)) return "shifts";
+
+        int year = date.getYear();
+        Partition p = find(conn, year);
+        if (p == null) {
+            if (!create) return null;
+            p = create(conn, year);
+        }
+        if (p.readOnly) {
+            throw new SQLException("Year " + year + " is archived read-only (use 'partitions' to unlock it).");
+        }
+        attach(conn, p);
+        return p.alias() + ".shifts";
+    }
+
+    // FROM-clause source covering [from, to] (nulls = unbounded). Attaches only the overlapping
+    // partitions, so it must run before any transaction is opened on conn.
+    static String source(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        if (!isPartitioned(conn)) return "shifts";
+
+        List<String> tables = new ArrayList<>();
+        for (Partition p : list(conn)) {
+            if (from != null && p.year < from.getYear()) continue;
+            if (to != null && p.year > to.getYear()) continue;
+            attach(conn, p);
+            tables.add(p.alias() + ".shifts");
+        }
+        if (tables.isEmpty()) return "shifts";
+        if (tables.size() == 1) return tables.get(0);
+
+        List<String> selects = new ArrayList<>();
+        for (String t : tables) selects.add("SELECT * FROM " + t);
+        return "(" + String.join(" UNION ALL ", selects) + ")";
+    }
+
+    static void attachAll(Connection conn) throws SQLException {
+        if (!isPartitioned(conn)) return;
+        for (Partition p : list(conn)) attach(conn, p);
+    }
+
+    // Brings every partition file up to the current shifts schema. Read-only years too: the flag
+    // keeps the app's writes out, but their columns still have to line up for UNION ALL. Must run
+    // before the partitions are attached, outside a transaction.
+    static void upgradeAll(Connection conn) throws SQLException {
+        if (!isPartitioned(conn)) return;
+        for (Partition p : list(conn)) {
+            if (!p.file.isFile()) continue;
+
+            String alias = "u" + p.year;
+            try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS " + alias)) {
+                ps.setString(1, p.file.getPath());
+                ps.execute();
+            }
+            try {
+                ShiftStore.upgradeShiftsTable(conn, alias);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DETACH DATABASE " + alias);
+                }
+            }
+        }
+    }
+
+    // Next shift id. Partitions can't share an AUTOINCREMENT, so ids keep coming from the main
+    // file's sequence for shifts, which also continues the ids of a migrated database.
+    static long nextId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int updated = stmt.executeUpdate("UPDATE sqlite_sequence SET seq = seq + 1 WHERE name = 'shifts'");
+            if (updated == 0) stmt.executeUpdate("INSERT INTO sqlite_sequence (name, seq) VALUES ('shifts', 1)");
+            try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'shifts'")) {
+                return rs.next() ? rs.getLong(1) : 1;
+            }
+        }
+    }
+
+    // ================= MAINTENANCE =================
+
+    // Splits the single shifts table into yearly partition files and marks every year before the
+    // current one read-only. Safe to re-run after an interruption. Returns rows moved.
+    static long migrate(Connection conn) throws SQLException {
+        Set<Integer> years = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT CAST(substr(shift_date, 1, 4) AS INTEGER) FROM main.shifts")) {
+            while (rs.next()) years.add(rs.getInt(1));
+        }
+
+        long moved = 0;
+        for (int year : years) {
+            Partition p = find(conn, year);
+            if (p == null) p = create(conn, year);
+            attach(conn, p);
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement copy = conn.prepareStatement(
+                     "INSERT OR IGNORE INTO " + p.alias() + ".shifts SELECT * FROM main.shifts WHERE shift_date BETWEEN ? AND ?");
+                 PreparedStatement drop = conn.prepareStatement(
+                     "DELETE FROM main.shifts WHERE shift_date BETWEEN ? AND ?")) {
+                String lo = Year.of(year).atDay(1).toString();
+                String hi = Year.of(year).atMonth(12).atEndOfMonth().toString();
+                copy.setString(1, lo);
+                copy.setString(2, hi);
+                copy.executeUpdate();
+                drop.setString(1, lo);
+                drop.setString(2, hi);
+                moved += drop.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE shift_partitions SET read_only = 1 WHERE year < ?")) {
+            ps.setInt(1, Year.now().getValue());
+            ps.executeUpdate();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("VACUUM main");
+        }
+        return moved;
+    }
+
+    static void setReadOnly(Connection conn, int year, boolean readOnly) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE shift_partitions SET read_only = ? WHERE year = ?")) {
+            ps.setInt(1, readOnly ? 1 : 0);
+            ps.setInt(2, year);
+            if (ps.executeUpdate() == 0) throw new SQLException("No partition for " + year + ".");
+        }
+    }
+
+    static List<Partition> list(Connection conn) throws SQLException {
+        List<Partition> out = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT year, file, read_only FROM shift_partitions ORDER BY year")) {
+            while (rs.next()) out.add(new Partition(rs.getInt(1), resolve(conn, rs.getString(2)), rs.getBoolean(3)));
+        }
+        return out;
+    }
+
+    // ================= HELPERS =================
+
+    private static Partition find(Connection conn, int year) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT file, read_only FROM shift_partitions WHERE year = ?")) {
+            ps.setInt(1, year);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Partition(year, resolve(conn, rs.getString(1)), rs.getBoolean(2)) : null;
+            }
+        }
+    }
+
+    private static Partition create(Connection conn, int year) throws SQLException {
+        File main = mainFile(conn);
+        String base = main.getName().endsWith(".db")
+            ? main.getName().substring(0, main.getName().length() - 3)
+            : main.getName();
+        String name = base + "-" + year + ".db";
+
+        Partition p = new Partition(year, new File(main.getParentFile(), name), false);
+        attach(conn, p);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA " + p.alias() + ".journal_mode = WAL");
+            stmt.execute(ShiftStore.shiftsTableDdl(p.alias()));
+            stmt.execute(ShiftStore.shiftsIndexDdl(p.alias()));
+        }
+        ShiftStore.upgradeShiftsTable(conn, p.alias());
+
+        // stored relative to the main file so the set can be moved or copied as a folder
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT OR IGNORE INTO shift_partitions (year, file, read_only) VALUES (?, ?, 0)")) {
+            ps.setInt(1, year);
+            ps.setString(2, name);
+            ps.executeUpdate();
+        }
+        return p;
+    }
+
+    private static void attach(Connection conn, Partition p) throws SQLException {
+        if (attached(conn).contains(p.alias())) return;
+
+        // archived years go through a URI so SQLite opens them read-only
+        String target = p.readOnly ? p.file.toURI() + "?mode=ro" : p.file.getPath();
+        try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS " + p.alias())) {
+            ps.setString(1, target);
+            ps.execute();
+        }
+    }
+
+    private static Set<String> attached(Connection conn) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) names.add(rs.getString("name"));
+        }
+        return names;
+    }
+
+    private static File mainFile(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                if ("main".equals(rs.getString("name"))) return new File(rs.getString("file")).getAbsoluteFile();
+            }
+        }
+        throw new SQLException("main database has no file");
+    }
+
+    private static File resolve(Connection conn, String file) throws SQLException {
+        File f = new File(file);
+        return f.isAbsolute() ? f : new File(mainFile(conn).getParentFile(), file);
+    }
+
+    // ================= DATA =================
+
+    record Partition(int year, File file, boolean readOnly) {
+        String alias() {
+            return "y" + year;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Per-month quantile sketches of tips per shift and $/hr, one per role.
+//
+// Sketches are updated alongside every insert/delete, and a range query merges the stored
+// month sketches, so percentiles over years of history read one small blob per month and role.
+final class ShiftSketches {
+
+    static final String TIPS = "TIPS";
+    static final String HOURLY = "HOURLY";
+
+    // role key for the all-roles rollup returned by percentiles()
+    static final String ALL_ROLES = "ALL";
+
+    private ShiftSketches() {}
+
+    // ================= SCHEMA =================
+
+    static void init(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS shift_sketches (
+                    month TEXT NOT NULL,
+                    role TEXT NOT NULL,
+                    metric TEXT NOT NULL,
+                    sketch BLOB NOT NULL,
+                    PRIMARY KEY (month, role, metric)
+                );
+            """);
+        }
+
+        boolean empty;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM shift_sketches)")) {
+            empty = rs.next() && rs.getBoolean(1);
+        }
+        if (empty) rebuild(conn);
+    }
+
+    // runs inside the caller's transaction
+    static void rebuild(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM shift_sketches");
+
+            Map<String, QuantileSketch> sketches = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT shift_date, role, hours_worked, tips, wage_rate FROM "
+                        + ShiftPartitions.source(conn, null, null))) {
+                while (rs.next()) {
+                    String month = YearMonth.from(LocalDate.parse(rs.getString(1))).toString();
+                    String role = rs.getString(2);
+                    double hours = rs.getDouble(3);
+                    double tips = rs.getDouble(4);
+                    double wage = rs.getDouble(5);
+
+                    sketches.computeIfAbsent(key(month, role, TIPS), k -> new QuantileSketch()).add(tips);
+                    sketches.computeIfAbsent(key(month, role, HOURLY), k -> new QuantileSketch())
+                        .add(perHour(hours, tips, wage));
+                }
+            }
+
+            for (Map.Entry<String, QuantileSketch> e : sketches.entrySet()) {
+                String[] k = e.getKey().split("\\|");
+                save(conn, k[0], k[1], k[2], e.getValue());
+            }
+        }
+    }
+
+    // ================= UPDATES =================
+
+    static void add(Connection conn, LocalDate date, String role, double hours, double tips, double wage)
+            throws SQLException {
+        String month = YearMonth.from(date).toString();
+
+        QuantileSketch t = load(conn, month, role, TIPS);
+        t.add(tips);
+        save(conn, month, role, TIPS, t);
+
+        QuantileSketch h = load(conn, month, role, HOURLY);
+        h.add(perHour(hours, tips, wage));
+        save(conn, month, role, HOURLY, h);
+    }
+
+    static void remove(Connection conn, LocalDate date, String role, double hours, double tips, double wage)
+            throws SQLException {
+        String month = YearMonth.from(date).toString();
+
+        QuantileSketch t = load(conn, month, role, TIPS);
+        t.remove(tips);
+        save(conn, month, role, TIPS, t);
+
+        QuantileSketch h = load(conn, month, role, HOURLY);
+        h.remove(perHour(hours, tips, wage));
+        save(conn, month, role, HOURLY, h);
+    }
+
+    private static QuantileSketch load(Connection conn, String month, String role, String metric)
+            throws SQLException {
+        String sql = "SELECT sketch FROM shift_sketches WHERE month = ? AND role = ? AND metric = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, month);
+            ps.setString(2, role);
+            ps.setString(3, metric);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? QuantileSketch.fromBytes(rs.getBytes(1)) : new QuantileSketch();
+            }
+        }
+    }
+
+    private static void save(Connection conn, String month, String role, String metric, QuantileSketch s)
+            throws SQLException {
+        String sql = "INSERT OR REPLACE INTO shift_sketches VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, month);
+            ps.setString(2, role);
+            ps.setString(3, metric);
+            ps.setBytes(4, s.toBytes());
+            ps.executeUpdate();
+        }
+    }
+
+    // ================= QUERIES =================
+
+    // Percentiles per role (plus ALL_ROLES) over the inclusive month range, merged from month sketches.
+    static Map<String, Percentiles> percentiles(Connection conn, YearMonth from, YearMonth to) throws SQLException {
+        String sql = """
+            SELECT role, metric, sketch
+            FROM shift_sketches
+            WHERE month BETWEEN ? AND ?
+        """;
+
+        Map<String, QuantileSketch> tips = new TreeMap<>();
+        Map<String, QuantileSketch> hourly = new TreeMap<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, from.toString());
+            ps.setString(2, to.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String role = rs.getString(1);
+                    QuantileSketch s = QuantileSketch.fromBytes(rs.getBytes(3));
+                    Map<String, QuantileSketch> target = TIPS.equals(rs.getString(2)) ? tips : hourly;
+
+                    target.computeIfAbsent(role, k -> new QuantileSketch()).merge(s);
+                    target.computeIfAbsent(ALL_ROLES, k -> new QuantileSketch()).merge(s);
+                }
+            }
+        }
+
+        Map<String, Percentiles> out = new TreeMap<>();
+        for (String role : tips.keySet()) {
+            QuantileSketch t = tips.get(role);
+            if (t.count() == 0) continue;
+            out.put(role, new Percentiles(t.count(), Quantiles.of(t), Quantiles.of(hourly.get(role))));
+        }
+        return out;
+    }
+
+    private static double perHour(double hours, double tips, double wage) {
+        return hours > 0 ? (tips + hours * wage) / hours : 0;
+    }
+
+    private static String key(String month, String role, String metric) {
+        return month + "|" + role + "|" + metric;
+    }
+
+    // ================= DATA =================
+
+    // rounded to what the sketch can vouch for (QuantileSketch.round); NaN when there is no data
+    record Quantiles(double p10, double p50, double p90) {
+        static Quantiles of(QuantileSketch s) {
+            if (s == null) return new Quantiles(Double.NaN, Double.NaN, Double.NaN);
+            return new Quantiles(QuantileSketch.round(s.quantile(0.10)), QuantileSketch.round(s.quantile(0.50)),
+                QuantileSketch.round(s.quantile(0.90)));
+        }
+    }
+
+    record Percentiles(long shifts, Quantiles tips, Quantiles perHour) {}
+}
@@ -0,0 +1,340 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Running per-role / per-weekday shift statistics and the month-end forecast built on them.
+//
+// Each (role, weekday) row keeps Welford accumulators (count, mean, sum of squared deviations)
+// for hours, tips and earnings. Rows are updated inside the same transaction as every insert and
+// delete, so serving a forecast reads at most 21 small rows instead of re-scanning shifts.
+final class ShiftStats {
+
+    // two-sided ~95% normal band
+    private static final double Z95 = 1.96;
+
+    private ShiftStats() {}
+
+    // ================= SCHEMA =================
+
+    static void init(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS shift_stats (
+                    role TEXT NOT NULL,
+                    weekday INTEGER NOT NULL,
+                    n INTEGER NOT NULL,
+                    hours_mean REAL NOT NULL,
+                    hours_m2 REAL NOT NULL,
+                    tips_mean REAL NOT NULL,
+                    tips_m2 REAL NOT NULL,
+                    earn_mean REAL NOT NULL,
+                    earn_m2 REAL NOT NULL,
+                    PRIMARY KEY (role, weekday)
+                );
+            """);
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS shift_stats_meta (
+                    id INTEGER PRIMARY KEY CHECK (id = 1),
+                    first_date TEXT
+                );
+            """);
+        }
+
+        // databases created before the stats existed get one full pass, then stay incremental
+        boolean empty;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM shift_stats)")) {
+            empty = rs.next() && rs.getBoolean(1);
+        }
+        if (empty) rebuild(conn);
+    }
+
+    // runs inside the caller's transaction
+    static void rebuild(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM shift_stats");
+            stmt.execute("DELETE FROM shift_stats_meta");
+
+            Map<String, Row> rows = new HashMap<>();
+            LocalDate first = null;
+
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT shift_date, role, hours_worked, tips, wage_rate FROM "
+                        + ShiftPartitions.source(conn, null, null))) {
+                while (rs.next()) {
+                    LocalDate date = LocalDate.parse(rs.getString(1));
+                    String role = rs.getString(2);
+                    double hours = rs.getDouble(3);
+                    double tips = rs.getDouble(4);
+                    double wage = rs.getDouble(5);
+
+                    rows.computeIfAbsent(key(role, date.getDayOfWeek()), k -> new Row(role, date.getDayOfWeek()))
+                        .add(hours, tips, tips + hours * wage);
+                    if (first == null || date.isBefore(first)) first = date;
+                }
+            }
+
+            for (Row r : rows.values()) save(conn, r);
+            if (first != null) noteDate(conn, first);
+        }
+    }
+
+    // ================= UPDATES =================
+
+    static void add(Connection conn, LocalDate date, String role, double hours, double tips, double wage)
+            throws SQLException {
+        Row r = load(conn, role, date.getDayOfWeek());
+        r.add(hours, tips, tips + hours * wage);
+        save(conn, r);
+        noteDate(conn, date);
+    }
+
+    static void remove(Connection conn, LocalDate date, String role, double hours, double tips, double wage)
+            throws SQLException {
+        Row r = load(conn, role, date.getDayOfWeek());
+        if (r.n == 0) return;
+        r.remove(hours, tips, tips + hours * wage);
+        save(conn, r);
+    }
+
+    // first_date only moves earlier; after deletes it may predate the oldest remaining shift,
+    // which slightly understates per-day rates rather than costing a scan to correct.
+    private static void noteDate(Connection conn, LocalDate date) throws SQLException {
+        String sql = """
+            INSERT INTO shift_stats_meta (id, first_date) VALUES (1, ?)
+            ON CONFLICT (id) DO UPDATE SET first_date = excluded.first_date
+            WHERE first_date IS NULL OR excluded.first_date < first_date
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, date.toString());
+            ps.executeUpdate();
+        }
+    }
+
+    private static Row load(Connection conn, String role, DayOfWeek weekday) throws SQLException {
+        String sql = """
+            SELECT n, hours_mean, hours_m2, tips_mean, tips_m2, earn_mean, earn_m2
+            FROM shift_stats
+            WHERE role = ? AND weekday = ?
+        """;
+        Row r = new Row(role, weekday);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, role);
+            ps.setInt(2, weekday.getValue());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) r.read(rs);
+            }
+        }
+        return r;
+    }
+
+    private static void save(Connection conn, Row r) throws SQLException {
+        String sql = "INSERT OR REPLACE INTO shift_stats VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, r.role);
+            ps.setInt(2, r.weekday.getValue());
+            ps.setLong(3, r.n);
+            ps.setDouble(4, r.hours.mean);
+            ps.setDouble(5, r.hours.m2);
+            ps.setDouble(6, r.tips.mean);
+            ps.setDouble(7, r.tips.m2);
+            ps.setDouble(8, r.earn.mean);
+            ps.setDouble(9, r.earn.m2);
+            ps.executeUpdate();
+        }
+    }
+
+    // ================= FORECAST =================
+
+    // Projects month-end totals as actual-so-far plus the expected contribution of every day
+    // still to come. Shifts on a given weekday are modelled as a Poisson number of draws from that
+    // weekday's history, so a day adds rate * mean and rate * E[x^2] to the mean and variance.
+    static Forecast forecast(Connection conn, YearMonth ym, LocalDate today, ShiftStore.MonthlySummary actual)
+            throws SQLException {
+        Map<DayOfWeek, List<Row>> byWeekday = new HashMap<>();
+        long history = 0;
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("""
+                 SELECT role, weekday, n, hours_mean, hours_m2, tips_mean, tips_m2, earn_mean, earn_m2
+                 FROM shift_stats
+                 WHERE n > 0
+             """)) {
+            while (rs.next()) {
+                Row r = new Row(rs.getString(1), DayOfWeek.of(rs.getInt(2)));
+                r.n = rs.getLong(3);
+                r.hours.set(r.n, rs.getDouble(4), rs.getDouble(5));
+                r.tips.set(r.n, rs.getDouble(6), rs.getDouble(7));
+                r.earn.set(r.n, rs.getDouble(8), rs.getDouble(9));
+                history += r.n;
+
+                byWeekday.computeIfAbsent(r.weekday, k -> new ArrayList<>()).add(r);
+            }
+        }
+
+        LocalDate first = null;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT first_date FROM shift_stats_meta WHERE id = 1")) {
+            if (rs.next() && rs.getString(1) != null) first = LocalDate.parse(rs.getString(1));
+        }
+
+        LocalDate start = ym.atDay(1).isAfter(today) ? ym.atDay(1) : today.plusDays(1);
+        LocalDate end = ym.atEndOfMonth();
+
+        double hoursMean = 0, tipsMean = 0, tipsVar = 0, earnMean = 0, earnVar = 0;
+        int remaining = 0;
+
+        if (first != null && !start.isAfter(end)) {
+            LocalDate histEnd = today.isBefore(first) ? first : today;
+            for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+                remaining++;
+                List<Row> rows = byWeekday.get(d.getDayOfWeek());
+                if (rows == null) continue;
+
+                long occurrences = Math.max(1, countWeekday(first, histEnd, d.getDayOfWeek()));
+                for (Row r : rows) {
+                    double rate = (double) r.n / occurrences;
+                    hoursMean += rate * r.hours.mean;
+                    tipsMean += rate * r.tips.mean;
+                    tipsVar += rate * r.tips.secondMoment();
+                    earnMean += rate * r.earn.mean;
+                    earnVar += rate * r.earn.secondMoment();
+                }
+            }
+        } else if (!start.isAfter(end)) {
+            remaining = (int) ChronoUnit.DAYS.between(start, end) + 1;
+        }
+
+        Forecast f = new Forecast();
+        f.month = ym;
+        f.remainingDays = remaining;
+        f.historyShifts = history;
+        f.hours = actual.totalHours + hoursMean;
+        f.tips = band(actual.totalTips, tipsMean, tipsVar);
+        f.earnings = band(actual.totalEarnings, earnMean, earnVar);
+        if (f.hours > 0) {
+            f.perHour = new Band(f.earnings.low / f.hours, f.earnings.expected / f.hours, f.earnings.high / f.hours);
+        }
+        return f;
+    }
+
+    private static Band band(double actual, double mean, double variance) {
+        double sd = Math.sqrt(Math.max(0, variance));
+        // whatever is already logged is a hard floor
+        double low = actual + Math.max(0, mean - Z95 * sd);
+        return new Band(low, actual + mean, actual + mean + Z95 * sd);
+    }
+
+    // days in [from, to] falling on the given weekday
+    private static long countWeekday(LocalDate from, LocalDate to, DayOfWeek weekday) {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days <= 0) return 0;
+        long count = days / 7;
+        int offset = Math.floorMod(weekday.getValue() - from.getDayOfWeek().getValue(), 7);
+        if (offset < days % 7) count++;
+        return count;
+    }
+
+    private static String key(String role, DayOfWeek weekday) {
+        return role + "/" + weekday.getValue();
+    }
+
+    // ================= DATA =================
+
+    static class Forecast {
+        YearMonth month;
+        int remainingDays;
+        long historyShifts;
+        double hours;
+        Band tips;
+        Band earnings;
+        Band perHour;   // null when no hours are expected
+    }
+
+    record Band(double low, double expected, double high) {}
+
+    // Welford accumulator for one metric
+    private static final class Welford {
+        long n;
+        double mean;
+        double m2;
+
+        void set(long n, double mean, double m2) {
+            this.n = n;
+            this.mean = mean;
+            this.m2 = m2;
+        }
+
+        void add(double x) {
+            n++;
+            double d = x - mean;
+            mean += d / n;
+            m2 += d * (x - mean);
+        }
+
+        // exact inverse of add(x)
+        void remove(double x) {
+            if (n <= 1) {
+                set(0, 0, 0);
+                return;
+            }
+            double before = mean;
+            n--;
+            mean -= (x - mean) / n;
+            m2 = Math.max(0, m2 - (x - mean) * (x - before));
+        }
+
+        double variance() {
+            return n > 1 ? m2 / (n - 1) : 0;
+        }
+
+        double secondMoment() {
+            return variance() + mean * mean;
+        }
+    }
+
+    private static final class Row {
+        final String role;
+        final DayOfWeek weekday;
+        long n;
+        final Welford hours = new Welford();
+        final Welford tips = new Welford();
+        final Welford earn = new Welford();
+
+        Row(String role, DayOfWeek weekday) {
+            this.role = role;
+            this.weekday = weekday;
+        }
+
+        void read(ResultSet rs) throws SQLException {
+            n = rs.getLong(1);
+            hours.set(n, rs.getDouble(2), rs.getDouble(3));
+            tips.set(n, rs.getDouble(4), rs.getDouble(5));
+            earn.set(n, rs.getDouble(6), rs.getDouble(7));
+        }
+
+        void add(double h, double t, double e) {
+            n++;
+            hours.add(h);
+            tips.add(t);
+            earn.add(e);
+        }
+
+        void remove(double h, double t, double e) {
+            n--;
+            hours.remove(h);
+            tips.remove(t);
+            earn.remove(e);
+        }
+    }
+}
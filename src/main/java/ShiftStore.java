@@ -0,0 +1,524 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Shared SQLite persistence for the CLI and the FX app.
+final class ShiftStore {
+
+    private ShiftStore() {}
+
+    // ================= SCHEMA =================
+
+    // same layout in the main file and in every year partition
+    static String shiftsTableDdl(String schema) {
+        return """
+            CREATE TABLE IF NOT EXISTS %s.shifts (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                shift_date TEXT NOT NULL,
+                role TEXT NOT NULL,
+                hours_worked REAL NOT NULL,
+                tips REAL NOT NULL,
+                wage_rate REAL NOT NULL,
+                uuid TEXT,
+                mod_seq INTEGER NOT NULL DEFAULT 0,
+                start_time TEXT,
+                end_time TEXT,
+                origin TEXT
+            );
+        """.formatted(schema);
+    }
+
+    // Brings a shifts table from an older version up to shiftsTableDdl, adding columns in the same
+    // order a fresh table has them, so the tables still line up for SELECT * and UNION ALL.
+    static void upgradeShiftsTable(Connection conn, String schema) throws SQLException {
+        ShiftSync.upgrade(conn, schema);
+
+        Set<String> columns = ShiftSync.columns(conn, schema, "shifts");
+        try (Statement stmt = conn.createStatement()) {
+            if (!columns.contains("start_time")) {
+                stmt.execute("ALTER TABLE " + schema + ".shifts ADD COLUMN start_time TEXT");
+                stmt.execute("ALTER TABLE " + schema + ".shifts ADD COLUMN end_time TEXT");
+            }
+            // sync: the node a row was received from
+            if (!columns.contains("origin")) stmt.execute("ALTER TABLE " + schema + ".shifts ADD COLUMN origin TEXT");
+        }
+    }
+
+    // date lookups (month views, filters) seek instead of scanning the table
+    static String shiftsIndexDdl(String schema) {
+        return "CREATE INDEX IF NOT EXISTS %s.idx_shifts_date ON shifts (shift_date)".formatted(schema);
+    }
+
+    static void initDatabase() {
+        if (Boolean.getBoolean("tipcalc.memory") && !Database.inMemory()) Backups.startMemoryMode();
+        try {
+            try (Connection conn = Database.open()) {
+                Database.configure(conn);
+            }
+            // statistics may need rebuilding from every partition
+            Database.write(conn -> {
+                ShiftPartitions.upgradeAll(conn);
+                ShiftPartitions.attachAll(conn);
+                return null;
+            }, conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(shiftsTableDdl("main"));
+                    stmt.execute(shiftsIndexDdl("main"));
+                }
+                ShiftSync.init(conn);
+                upgradeShiftsTable(conn, "main");
+                ShiftPartitions.init(conn);
+                ShiftStats.init(conn);
+                ShiftSketches.init(conn);
+                ShiftChangeFeed.init(conn);
+                return null;
+            });
+        } catch (SQLException e) {
+            Log.error("init_db_failed", e, "db", Database.path());
+        }
+    }
+
+    // ================= WRITES =================
+
+    // returns false when the shift could not be saved
+    static boolean insertShift(LocalDate date, String role, double hours, double tips, double wage) {
+        return insertShift(date, role, hours, tips, wage, null);
+    }
+
+    // As above, with the clock time the shift started (null if not known); it ends `hours` later.
+    static boolean insertShift(LocalDate date, String role, double hours, double tips, double wage, LocalTime start) {
+        LocalDateTime from = start == null ? null : date.atTime(start);
+        LocalDateTime to = start == null ? null : from.plusMinutes(Math.round(hours * 60));
+        long t0 = System.nanoTime();
+        try {
+            int id = Database.write(conn -> ShiftPartitions.tableForWrite(conn, date, true), conn -> {
+                String table = ShiftPartitions.tableForWrite(conn, date, true);
+                return insertRow(conn, table, date, role, hours, tips, wage, from, to, ShiftSync.newUuid());
+            });
+            Log.info("shift_inserted", "id", id, "date", date, "role", role, "hours", hours, "ms", Log.ms(t0));
+            return true;
+        } catch (SQLException e) {
+            Log.error("insert_failed", e, "date", date, "role", role, "ms", Log.ms(t0));
+            return false;
+        }
+    }
+
+    // Inserts one shift into `table` (already attached) in the caller's transaction, together with
+    // its statistics, change-log entry and sync sequence. start/end may be null. Returns the new id.
+    static int insertRow(Connection conn, String table, LocalDate date, String role, double hours, double tips,
+                         double wage, LocalDateTime start, LocalDateTime end, String uuid) throws SQLException {
+        boolean partitioned = !table.equals("shifts");
+        String startText = start == null ? null : start.toString();
+        String endText = end == null ? null : end.toString();
+        String sql = """
+            INSERT INTO %s (id, shift_date, role, hours_worked, tips, wage_rate, uuid, mod_seq, start_time, end_time)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """.formatted(table);
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (partitioned) ps.setLong(1, ShiftPartitions.nextId(conn));
+            else ps.setNull(1, Types.INTEGER);
+            ps.setString(2, date.toString());
+            ps.setString(3, role);
+            ps.setDouble(4, hours);
+            ps.setDouble(5, tips);
+            ps.setDouble(6, wage);
+            ps.setString(7, uuid);
+            ps.setLong(8, ShiftSync.nextSeq(conn));
+            ps.setString(9, startText);
+            ps.setString(10, endText);
+            ps.executeUpdate();
+        }
+        int id = (int) lastInsertId(conn);
+
+        // keep the running statistics in the same transaction as the row
+        ShiftStats.add(conn, date, role, hours, tips, wage);
+        ShiftSketches.add(conn, date, role, hours, tips, wage);
+        ShiftChangeFeed.record(conn, ShiftChangeFeed.Op.INSERT, new Shift(id, date, role, hours, tips, wage),
+            startText, endText);
+        return id;
+    }
+
+    // Deletes one shift from `table` in the caller's transaction, backing it out of the statistics.
+    // start/end are its stored times (or null), for the change log. A non-null uuid leaves a
+    // tombstone so the delete reaches sync peers; pass null when the row is being replaced rather
+    // than deleted.
+    static void deleteRow(Connection conn, String table, Shift s, String start, String end, String uuid)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+            ps.setInt(1, s.id());
+            ps.executeUpdate();
+        }
+        backOut(conn, s, start, end, uuid);
+    }
+
+    private static void backOut(Connection conn, Shift s, String start, String end, String uuid) throws SQLException {
+        ShiftStats.remove(conn, s.date(), s.role(), s.hours(), s.tips(), s.wage());
+        ShiftSketches.remove(conn, s.date(), s.role(), s.hours(), s.tips(), s.wage());
+        ShiftChangeFeed.record(conn, ShiftChangeFeed.Op.DELETE, s, start, end);
+        if (uuid != null) ShiftSync.tombstone(conn, uuid, s.date());
+    }
+
+    static int deleteShiftsByDate(LocalDate date) {
+        long t0 = System.nanoTime();
+        try {
+            return deleteShifts(date);
+        } catch (SQLException e) {
+            Log.error("delete_failed", e, "date", date, "ms", Log.ms(t0));
+            return 0;
+        }
+    }
+
+    // deleteShiftsByDate, throwing instead of logging, for callers that count failures (the load test)
+    static int deleteShifts(LocalDate date) throws SQLException {
+        long t0 = System.nanoTime();
+        int deleted = Database.write(conn -> ShiftPartitions.tableForWrite(conn, date, false), conn -> {
+            String table = ShiftPartitions.tableForWrite(conn, date, false);
+            if (table == null) return 0; // no partition for that year, so nothing to delete
+
+            String select = """
+                SELECT id, shift_date, role, hours_worked, tips, wage_rate, uuid, start_time, end_time
+                FROM %s
+                WHERE shift_date = ?
+            """.formatted(table);
+            String sql = "DELETE FROM " + table + " WHERE shift_date = ?";
+
+            // the doomed rows are needed to back them out of the statistics and tombstone them for sync
+            List<Shift> doomed = new ArrayList<>();
+            List<String> uuids = new ArrayList<>();
+            List<String> starts = new ArrayList<>();
+            List<String> ends = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(select)) {
+                ps.setString(1, date.toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        doomed.add(readShift(rs));
+                        uuids.add(rs.getString("uuid"));
+                        starts.add(rs.getString("start_time"));
+                        ends.add(rs.getString("end_time"));
+                    }
+                }
+            }
+
+            int rows;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, date.toString());
+                rows = ps.executeUpdate();
+            }
+
+            for (int i = 0; i < doomed.size(); i++) {
+                backOut(conn, doomed.get(i), starts.get(i), ends.get(i), uuids.get(i));
+            }
+            return rows;
+        });
+        Log.info("shifts_deleted", "date", date, "rows", deleted, "ms", Log.ms(t0));
+        return deleted;
+    }
+
+    // ================= QUERIES =================
+
+    static MonthlySummary getMonthlySummary(YearMonth ym) {
+        try {
+            return monthlySummary(ym);
+        } catch (SQLException e) {
+            Log.error("summary_failed", e, "month", ym);
+            return new MonthlySummary();
+        }
+    }
+
+    // getMonthlySummary, throwing instead of logging
+    static MonthlySummary monthlySummary(YearMonth ym) throws SQLException {
+        long t0 = System.nanoTime();
+        try (Connection conn = Database.open()) {
+            MonthlySummary ms = summarize(conn, ym.atDay(1), ym.atEndOfMonth());
+            Log.debug("summary", "month", ym, "shifts", ms.shiftCount, "ms", Log.ms(t0));
+            return ms;
+        }
+    }
+
+    static List<Shift> fetchShiftsForMonth(YearMonth ym) {
+        try {
+            return shiftsForMonth(ym);
+        } catch (SQLException e) {
+            Log.error("list_failed", e, "month", ym);
+            return new ArrayList<>();
+        }
+    }
+
+    // fetchShiftsForMonth, throwing instead of logging
+    static List<Shift> shiftsForMonth(YearMonth ym) throws SQLException {
+        long t0 = System.nanoTime();
+        try (Connection conn = Database.open()) {
+            List<Shift> rows = fetchShifts(conn, ym.atDay(1), ym.atEndOfMonth());
+            Log.debug("list", "month", ym, "rows", rows.size(), "ms", Log.ms(t0));
+            return rows;
+        }
+    }
+
+    // Shifts dated in [from, to] for an arbitrary range (the FX filter bar); seeks on idx_shifts_date.
+    static List<Shift> fetchShiftsInRange(LocalDate from, LocalDate to) {
+        long t0 = System.nanoTime();
+        try (Connection conn = Database.open()) {
+            List<Shift> rows = fetchShifts(conn, from, to);
+            Log.debug("search", "from", from, "to", to, "rows", rows.size(), "ms", Log.ms(t0));
+            return rows;
+        } catch (SQLException e) {
+            Log.error("search_failed", e, "from", from, "to", to);
+            return new ArrayList<>();
+        }
+    }
+
+    // Totals for shifts dated in [from, to] on an open connection (any database file).
+    static MonthlySummary summarize(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        String sql = """
+            SELECT
+                COALESCE(COUNT(*), 0),
+                COALESCE(SUM(hours_worked), 0),
+                COALESCE(SUM(tips), 0),
+                COALESCE(SUM(tips + hours_worked * wage_rate), 0)
+            FROM %s
+            WHERE shift_date BETWEEN ? AND ?
+        """.formatted(ShiftPartitions.source(conn, from, to));
+
+        MonthlySummary ms = new MonthlySummary();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, from.toString());
+            ps.setString(2, to.toString());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    ms.shiftCount = rs.getInt(1);
+                    ms.totalHours = rs.getDouble(2);
+                    ms.totalTips = rs.getDouble(3);
+                    ms.totalEarnings = rs.getDouble(4);
+                }
+            }
+        }
+        return ms;
+    }
+
+    // Shifts dated in [from, to], ordered by date then id, on an open connection.
+    static List<Shift> fetchShifts(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        List<Shift> rows = new ArrayList<>();
+
+        String sql = """
+            SELECT id, shift_date, role, hours_worked, tips, wage_rate
+            FROM %s
+            WHERE shift_date BETWEEN ? AND ?
+            ORDER BY shift_date, id
+        """.formatted(ShiftPartitions.source(conn, from, to));
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, from.toString());
+            ps.setString(2, to.toString());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(readShift(rs));
+            }
+        }
+        return rows;
+    }
+
+    // Month totals under the configured pay rules (overtime, holidays, tip-out, top-ups).
+    static PayRules.Totals getPayroll(YearMonth ym) {
+        try (Connection conn = Database.open()) {
+            return PayRules.current().payroll(conn, ym.atDay(1), ym.atEndOfMonth());
+        } catch (SQLException e) {
+            Log.error("payroll_failed", e, "month", ym);
+            return new PayRules.Totals();
+        }
+    }
+
+    static ShiftStats.Forecast getMonthlyForecast(YearMonth ym) {
+        return getMonthlyForecast(ym, getMonthlySummary(ym));
+    }
+
+    static ShiftStats.Forecast getMonthlyForecast(YearMonth ym, MonthlySummary actual) {
+        try (Connection conn = Database.open()) {
+            return ShiftStats.forecast(conn, ym, LocalDate.now(), actual);
+        } catch (SQLException e) {
+            Log.error("forecast_failed", e, "month", ym);
+            return null;
+        }
+    }
+
+    static Map<String, ShiftSketches.Percentiles> getPercentiles(YearMonth from, YearMonth to) {
+        try (Connection conn = Database.open()) {
+            return ShiftSketches.percentiles(conn, from, to);
+        } catch (SQLException e) {
+            Log.error("percentiles_failed", e, "from", from, "to", to);
+            return Map.of();
+        }
+    }
+
+    // Per-role totals for shifts dated in [from, to], on an open connection.
+    static Map<String, MonthlySummary> roleReport(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        String sql = """
+            SELECT role, COUNT(*), SUM(hours_worked), SUM(tips), SUM(tips + hours_worked * wage_rate)
+            FROM %s
+            WHERE shift_date BETWEEN ? AND ?
+            GROUP BY role
+        """.formatted(ShiftPartitions.source(conn, from, to));
+
+        Map<String, MonthlySummary> out = new TreeMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, from.toString());
+            ps.setString(2, to.toString());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    MonthlySummary ms = new MonthlySummary();
+                    ms.shiftCount = rs.getInt(2);
+                    ms.totalHours = rs.getDouble(3);
+                    ms.totalTips = rs.getDouble(4);
+                    ms.totalEarnings = rs.getDouble(5);
+                    out.put(rs.getString(1), ms);
+                }
+            }
+        }
+        return out;
+    }
+
+    // The n highest-earning shifts dated in [from, to], on an open connection.
+    static List<Shift> topShifts(Connection conn, LocalDate from, LocalDate to, int n) throws SQLException {
+        String sql = """
+            SELECT id, shift_date, role, hours_worked, tips, wage_rate
+            FROM %s
+            WHERE shift_date BETWEEN ? AND ?
+            ORDER BY tips + hours_worked * wage_rate DESC, id
+            LIMIT ?
+        """.formatted(ShiftPartitions.source(conn, from, to));
+
+        List<Shift> rows = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, from.toString());
+            ps.setString(2, to.toString());
+            ps.setInt(3, n);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(readShift(rs));
+            }
+        }
+        return rows;
+    }
+
+    // ================= DIAGNOSTICS =================
+
+    // Runs the built-in read paths for ym with plan capture on. Keyed by a label for each path;
+    // connection housekeeping (PRAGMAs, schema lookups) is left out.
+    static Map<String, List<QueryLog.Trace>> explainBuiltins(YearMonth ym) {
+        Map<String, Runnable> paths = new LinkedHashMap<>();
+        paths.put("monthly summary", () -> getMonthlySummary(ym));
+        paths.put("list shifts", () -> fetchShiftsForMonth(ym));
+        paths.put("filter date range", () -> fetchShiftsInRange(ym.minusMonths(11).atDay(1), ym.atEndOfMonth()));
+        paths.put("percentiles", () -> getPercentiles(ym, ym));
+        paths.put("forecast", () -> getMonthlyForecast(ym));
+        paths.put("payroll", () -> getPayroll(ym));
+
+        Map<String, List<QueryLog.Trace>> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Runnable> e : paths.entrySet()) {
+            List<QueryLog.Trace> traces = new ArrayList<>();
+            for (QueryLog.Trace t : QueryLog.capture(e.getValue())) {
+                if (t.sql().startsWith("PRAGMA") || t.sql().contains("sqlite_master")) continue;
+                traces.add(t);
+            }
+            out.put(e.getKey(), traces);
+        }
+        return out;
+    }
+
+    // ================= PARTITIONS =================
+
+    // Moves an existing single-file database into per-year partition files; returns rows moved.
+    static long migrateToPartitions() throws SQLException {
+        // partition files are attached by path, which a memory database doesn't have
+        if (Database.inMemory()) throw new SQLException("Partitioning is not available in in-memory mode.");
+        try (Connection conn = Database.open()) {
+            return ShiftPartitions.migrate(conn);
+        }
+    }
+
+    // Interval index over the timed shifts dated in [from, to].
+    static ShiftIntervals loadIntervals(LocalDate from, LocalDate to) throws SQLException {
+        try (Connection conn = Database.open()) {
+            return ShiftIntervals.load(conn, from, to);
+        }
+    }
+
+    static List<ShiftPartitions.Partition> listPartitions() throws SQLException {
+        try (Connection conn = Database.open()) {
+            return ShiftPartitions.list(conn);
+        }
+    }
+
+    static void setPartitionReadOnly(int year, boolean readOnly) throws SQLException {
+        try (Connection conn = Database.open()) {
+            ShiftPartitions.setReadOnly(conn, year, readOnly);
+        }
+    }
+
+    // ================= HELPERS =================
+
+    static long lastInsertId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // expects columns: id, shift_date, role, hours_worked, tips, wage_rate
+    static Shift readShift(ResultSet rs) throws SQLException {
+        return new Shift(
+            rs.getInt("id"),
+            LocalDate.parse(rs.getString("shift_date")),
+            rs.getString("role"),
+            rs.getDouble("hours_worked"),
+            rs.getDouble("tips"),
+            rs.getDouble("wage_rate")
+        );
+    }
+
+    // ================= DATA =================
+
+    static class MonthlySummary {
+        int shiftCount;
+        double totalHours;
+        double totalTips;
+        double totalEarnings;
+
+        void merge(MonthlySummary other) {
+            shiftCount += other.shiftCount;
+            totalHours += other.totalHours;
+            totalTips += other.totalTips;
+            totalEarnings += other.totalEarnings;
+        }
+
+        // sign = +1 for an inserted shift, -1 for a deleted one
+        void apply(Shift s, int sign) {
+            shiftCount += sign;
+            totalHours += sign * s.hours();
+            totalTips += sign * s.tips();
+            totalEarnings += sign * s.total();
+        }
+    }
+
+    record Shift(int id, LocalDate date, String role, double hours, double tips, double wage) {
+        double total() {
+            return tips + hours * wage;
+        }
+    }
+}
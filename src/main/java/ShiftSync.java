@@ -0,0 +1,637 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+// Offline sync of shifts between two copies of the database (say, a laptop and the till).
+//
+// Every shift carries a random uuid that stays the same in every copy, and a mod_seq taken from
+// this database's counter whenever the row is written here. Deletes leave a tombstone with a
+// mod_seq of its own. `sync export` writes the rows and tombstones past what the peer has
+// acknowledged to a small gzipped binary changeset; `sync import` applies one in batches.
+// Each changeset also carries the exporter's counter and the highest of the peer's counters it
+// has received, so watermarks only advance for changes known to have arrived. A lost file is
+// just covered again by the next export. Rows and tombstones remember which node they were
+// received from (origin) and are not sent back to it.
+//
+// The node id lives in the database file, so a copied file would otherwise sync under its
+// original's id. sync_meta also records which file the id belongs to (path plus the file's
+// identity on disk); a database that finds itself in a different file, because it was copied,
+// moved or restored, takes a new id at startup. `sync new-id` does the same by hand.
+//
+// Merging is deterministic, so both copies converge whatever order files are applied in: a
+// tombstone beats every version of its shift, and two different versions under one uuid resolve
+// to the one whose (date, role, hours, tips, wage, start, end) sorts first. Re-importing a file
+// is a no-op.
+final class ShiftSync {
+
+    private static final int MAGIC = 0x54435332; // "TCS2"; shift changes carry start/end times
+    private static final int MAGIC_V1 = 0x54435331; // "TCS1", still read
+    private static final byte SHIFT = 0;
+    private static final byte TOMBSTONE = 1;
+
+    // changes applied per write transaction
+    private static final int BATCH = 500;
+
+    // what apply() did with a change
+    private static final int INSERTED = 0;
+    private static final int REPLACED = 1;
+    private static final int DELETED = 2;
+    private static final int UNCHANGED = 3;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private ShiftSync() {}
+
+    // ================= SCHEMA =================
+
+    static void init(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS sync_meta (
+                    id INTEGER PRIMARY KEY CHECK (id = 1),
+                    node_id TEXT NOT NULL,
+                    seq INTEGER NOT NULL,
+                    file_key TEXT
+                );
+            """);
+            if (!columns(conn, "main", "sync_meta").contains("file_key")) {
+                stmt.execute("ALTER TABLE sync_meta ADD COLUMN file_key TEXT");
+            }
+            stmt.execute("INSERT OR IGNORE INTO sync_meta (id, node_id, seq) VALUES (1, lower(hex(randomblob(16))), 0)");
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS sync_peers (
+                    node_id TEXT PRIMARY KEY,
+                    sent_seq INTEGER NOT NULL,
+                    received_seq INTEGER NOT NULL
+                );
+            """);
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS shift_tombstones (
+                    uuid TEXT PRIMARY KEY,
+                    shift_date TEXT NOT NULL,
+                    mod_seq INTEGER NOT NULL,
+                    origin TEXT
+                );
+            """);
+            if (!columns(conn, "main", "shift_tombstones").contains("origin")) {
+                stmt.execute("ALTER TABLE shift_tombstones ADD COLUMN origin TEXT");
+            }
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tombstones_mod_seq ON shift_tombstones (mod_seq)");
+        }
+        checkFile(conn);
+    }
+
+    // A new node id when this database is not in the file it was last opened from. The first
+    // check after an upgrade has nothing to compare against and just records the file.
+    private static void checkFile(Connection conn) throws SQLException {
+        String key = fileKey();
+        if (key == null) return; // can't tell (e.g. not on disk yet); check again next start
+
+        String stored;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT file_key FROM sync_meta WHERE id = 1")) {
+            stored = rs.next() ? rs.getString(1) : null;
+        }
+        if (key.equals(stored)) return;
+
+        if (stored == null) {
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE sync_meta SET file_key = ? WHERE id = 1")) {
+                ps.setString(1, key);
+                ps.executeUpdate();
+            }
+        } else {
+            String old = nodeId(conn);
+            String node = renewNodeId(conn, key);
+            Log.info("sync_node_renewed", "reason", "database file changed", "old", old, "node", node,
+                "db", Database.path());
+        }
+    }
+
+    // Gives this database a new node id, for a copy made before the file check could record its
+    // original. Peers see the copy as a new node and send it their history once; merging makes
+    // that harmless.
+    static String renewNodeId() throws SQLException {
+        String[] ids = Database.write(conn -> new String[]{nodeId(conn), renewNodeId(conn, fileKey())});
+        Log.info("sync_node_renewed", "reason", "requested", "old", ids[0], "node", ids[1], "db", Database.path());
+        return ids[1];
+    }
+
+    private static String renewNodeId(Connection conn, String key) throws SQLException {
+        String node = newUuid();
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE sync_meta SET node_id = ?, file_key = ? WHERE id = 1")) {
+            ps.setString(1, node);
+            ps.setString(2, key);
+            ps.executeUpdate();
+        }
+        return node;
+    }
+
+    // path of the database file plus its identity on disk (inode, or creation time where the
+    // file system has no key); a copy keeps neither
+    private static String fileKey() {
+        Path file = Path.of(Database.path()).toAbsolutePath().normalize();
+        try {
+            BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+            Object key = a.fileKey();
+            return file + "|" + (key != null ? key : a.creationTime());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Adds uuid / mod_seq to a shifts table created before sync existed (mod_seq 0, so old rows go
+    // out with the first export), and creates the lookup indexes.
+    static void upgrade(Connection conn, String schema) throws SQLException {
+        if (!columns(conn, schema, "shifts").contains("uuid")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE " + schema + ".shifts ADD COLUMN uuid TEXT");
+                stmt.execute("ALTER TABLE " + schema + ".shifts ADD COLUMN mod_seq INTEGER NOT NULL DEFAULT 0");
+            }
+            fillUuids(conn, schema);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS %s.idx_shifts_uuid ON shifts (uuid)".formatted(schema));
+            stmt.execute("CREATE INDEX IF NOT EXISTS %s.idx_shifts_mod_seq ON shifts (mod_seq)".formatted(schema));
+        }
+    }
+
+    // Old rows get uuids derived from their id and contents, so two copies of a database made
+    // before the upgrade give the same shift the same uuid instead of syncing it twice.
+    private static void fillUuids(Connection conn, String schema) throws SQLException {
+        boolean own = conn.getAutoCommit();
+        if (own) conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT id, shift_date, role, hours_worked, tips, wage_rate FROM " + schema + ".shifts");
+             PreparedStatement ps = conn.prepareStatement("UPDATE " + schema + ".shifts SET uuid = ? WHERE id = ?")) {
+            while (rs.next()) {
+                String row = rs.getInt(1) + "|" + canonical(LocalDate.parse(rs.getString(2)), rs.getString(3),
+                    rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), null, null);
+                ps.setString(1, UUID.nameUUIDFromBytes(row.getBytes(StandardCharsets.UTF_8)).toString().replace("-", ""));
+                ps.setInt(2, rs.getInt(1));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            if (own) conn.commit();
+        } catch (SQLException e) {
+            if (own) conn.rollback();
+            throw e;
+        } finally {
+            if (own) conn.setAutoCommit(true);
+        }
+    }
+
+    // ================= SEQUENCES =================
+
+    static String newUuid() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    // Next value of this database's change counter, in the caller's transaction.
+    static long nextSeq(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE sync_meta SET seq = seq + 1 WHERE id = 1");
+            try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sync_meta WHERE id = 1")) {
+                return rs.next() ? rs.getLong(1) : 1;
+            }
+        }
+    }
+
+    static void tombstone(Connection conn, String uuid, LocalDate date) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT OR IGNORE INTO shift_tombstones (uuid, shift_date, mod_seq) VALUES (?, ?, ?)")) {
+            ps.setString(1, uuid);
+            ps.setString(2, date.toString());
+            ps.setLong(3, nextSeq(conn));
+            ps.executeUpdate();
+        }
+    }
+
+    // ================= STATUS =================
+
+    static Status status() throws SQLException {
+        try (Connection conn = Database.open()) {
+            List<Peer> peers = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT node_id, sent_seq, received_seq FROM sync_peers ORDER BY node_id")) {
+                while (rs.next()) peers.add(new Peer(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+            }
+            return new Status(nodeId(conn), currentSeq(conn), peers);
+        }
+    }
+
+    // ================= EXPORT =================
+
+    // Writes everything the peer (a node id or unique prefix of one) hasn't acknowledged, or the
+    // whole history when peer is null.
+    static ExportResult export(File file, String peer) throws SQLException, IOException {
+        long start = System.nanoTime();
+        ExportResult r = new ExportResult();
+        r.file = file;
+        List<Change> changes = new ArrayList<>();
+        String node;
+        long ack = -1;
+
+        try (Connection conn = Database.open()) {
+            List<Target> targets = targets(conn);
+
+            // one snapshot, so the counter written to the file matches the rows read
+            conn.setAutoCommit(false);
+            try {
+                node = nodeId(conn);
+                r.since = -1;
+                if (peer != null) {
+                    Peer p = findPeer(conn, peer);
+                    r.peer = p.nodeId();
+                    r.since = p.sentSeq();
+                    ack = p.receivedSeq();
+                }
+                r.upTo = currentSeq(conn);
+
+                for (Target t : targets) {
+                    String sql = """
+                        SELECT uuid, shift_date, role, hours_worked, tips, wage_rate, start_time, end_time
+                        FROM %s
+                        WHERE mod_seq > ? AND mod_seq <= ? AND (origin IS NULL OR origin <> ?)
+                    """.formatted(t.table());
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setLong(1, r.since);
+                        ps.setLong(2, r.upTo);
+                        ps.setString(3, r.peer == null ? "" : r.peer);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                changes.add(new Change(SHIFT, rs.getString(1), LocalDate.parse(rs.getString(2)),
+                                    rs.getString(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6),
+                                    rs.getString(7), rs.getString(8)));
+                            }
+                        }
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT uuid, shift_date FROM shift_tombstones "
+                            + "WHERE mod_seq > ? AND mod_seq <= ? AND (origin IS NULL OR origin <> ?)")) {
+                    ps.setLong(1, r.since);
+                    ps.setLong(2, r.upTo);
+                    ps.setString(3, r.peer == null ? "" : r.peer);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            changes.add(new Change(TOMBSTONE, rs.getString(1), LocalDate.parse(rs.getString(2)),
+                                null, 0, 0, 0, null, null));
+                        }
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.write(HEX.parseHex(node));
+            out.writeLong(r.upTo);
+            out.writeLong(ack);
+            out.writeInt(changes.size());
+            for (Change c : changes) {
+                out.writeByte(c.kind());
+                out.write(HEX.parseHex(c.uuid()));
+                out.writeInt((int) c.date().toEpochDay());
+                if (c.kind() == SHIFT) {
+                    out.writeUTF(c.role());
+                    out.writeDouble(c.hours());
+                    out.writeDouble(c.tips());
+                    out.writeDouble(c.wage());
+                    out.writeUTF(c.start() == null ? "" : c.start());
+                    out.writeUTF(c.end() == null ? "" : c.end());
+                }
+            }
+        }
+
+        for (Change c : changes) {
+            if (c.kind() == SHIFT) r.shifts++;
+            else r.tombstones++;
+        }
+        r.bytes = file.length();
+        r.ms = (System.nanoTime() - start) / 1_000_000;
+        Log.info("sync_exported", "file", file, "peer", r.peer, "since", r.since, "up_to", r.upTo,
+            "shifts", r.shifts, "tombstones", r.tombstones, "bytes", r.bytes, "ms", r.ms);
+        return r;
+    }
+
+    // ================= IMPORT =================
+
+    static ImportResult importFrom(File file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        ImportResult r = new ImportResult();
+        List<Change> changes = new ArrayList<>();
+        long upTo;
+        long ack;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != MAGIC_V1) throw new IOException("Not a shift changeset: " + file);
+            r.from = HEX.formatHex(in.readNBytes(16));
+            upTo = in.readLong();
+            ack = in.readLong();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                byte kind = in.readByte();
+                String uuid = HEX.formatHex(in.readNBytes(16));
+                LocalDate date = LocalDate.ofEpochDay(in.readInt());
+                if (kind == SHIFT) {
+                    String role = in.readUTF();
+                    double hours = in.readDouble();
+                    double tips = in.readDouble();
+                    double wage = in.readDouble();
+                    String from = magic == MAGIC ? emptyToNull(in.readUTF()) : null;
+                    String to = magic == MAGIC ? emptyToNull(in.readUTF()) : null;
+                    changes.add(new Change(kind, uuid, date, role, hours, tips, wage, from, to));
+                } else if (kind == TOMBSTONE) {
+                    changes.add(new Change(kind, uuid, date, null, 0, 0, 0, null, null));
+                } else {
+                    throw new IOException("Corrupt changeset (change kind " + kind + ")");
+                }
+            }
+        } catch (ZipException e) {
+            throw new IOException("Not a shift changeset: " + file);
+        }
+
+        try (Connection conn = Database.open()) {
+            if (r.from.equals(nodeId(conn))) throw new IOException("That changeset was exported from this database.");
+        }
+
+        for (int i = 0; i < changes.size(); i += BATCH) {
+            List<Change> batch = changes.subList(i, Math.min(changes.size(), i + BATCH));
+            List<Target> targets = new ArrayList<>();
+            Map<Integer, String> writeTables = new HashMap<>();
+
+            // attach everything a batch might touch first; a retry starts over on a new connection
+            int[] counts = Database.write(conn -> {
+                targets.clear();
+                targets.addAll(targets(conn));
+                writeTables.clear();
+                for (Change c : batch) {
+                    if (c.kind() == SHIFT && !writeTables.containsKey(c.date().getYear())) {
+                        writeTables.put(c.date().getYear(), ShiftPartitions.tableForWrite(conn, c.date(), true));
+                    }
+                }
+                return null;
+            }, conn -> {
+                int[] n = new int[4];
+                for (Change c : batch) n[apply(conn, c, r.from, targets, writeTables)]++;
+                return n;
+            });
+            r.inserted += counts[INSERTED];
+            r.replaced += counts[REPLACED];
+            r.deleted += counts[DELETED];
+            r.unchanged += counts[UNCHANGED];
+        }
+
+        // only now is everything up to upTo known to be here
+        Database.write(conn -> {
+            String sql = """
+                INSERT INTO sync_peers (node_id, sent_seq, received_seq) VALUES (?, ?, ?)
+                ON CONFLICT (node_id) DO UPDATE SET
+                    sent_seq = max(sent_seq, excluded.sent_seq),
+                    received_seq = max(received_seq, excluded.received_seq)
+            """;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, r.from);
+                ps.setLong(2, ack);
+                ps.setLong(3, upTo);
+                ps.executeUpdate();
+            }
+            return null;
+        });
+
+        r.ms = (System.nanoTime() - start) / 1_000_000;
+        Log.info("sync_imported", "file", file, "from", r.from, "changes", changes.size(), "inserted", r.inserted,
+            "replaced", r.replaced, "deleted", r.deleted, "unchanged", r.unchanged, "ms", r.ms);
+        return r;
+    }
+
+    // Applies one change received from node `from`; returns what it did.
+    private static int apply(Connection conn, Change c, String from, List<Target> targets,
+                             Map<Integer, String> writeTables) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM shift_tombstones WHERE uuid = ?")) {
+            ps.setString(1, c.uuid());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return UNCHANGED;
+            }
+        }
+
+        Local local = find(conn, c.uuid(), targets);
+
+        if (c.kind() == TOMBSTONE) {
+            if (local == null) {
+                tombstone(conn, c.uuid(), c.date());
+                received(conn, "shift_tombstones", c.uuid(), from);
+                return UNCHANGED;
+            }
+            writable(local);
+            ShiftStore.deleteRow(conn, local.target().table(), local.shift(), local.start(), local.end(), c.uuid());
+            received(conn, "shift_tombstones", c.uuid(), from);
+            return DELETED;
+        }
+
+        String table = writeTables.get(c.date().getYear());
+        if (local == null) {
+            ShiftStore.insertRow(conn, table, c.date(), c.role(),
+                c.hours(), c.tips(), c.wage(), time(c.start()), time(c.end()), c.uuid());
+            received(conn, table, c.uuid(), from);
+            return INSERTED;
+        }
+
+        String theirs = canonical(c.date(), c.role(), c.hours(), c.tips(), c.wage(), c.start(), c.end());
+        ShiftStore.Shift s = local.shift();
+        String ours = canonical(s.date(), s.role(), s.hours(), s.tips(), s.wage(), local.start(), local.end());
+        int cmp = theirs.compareTo(ours);
+        if (cmp == 0) return UNCHANGED;
+
+        if (cmp < 0) {
+            writable(local);
+            // replacing, not deleting, so no tombstone
+            ShiftStore.deleteRow(conn, local.target().table(), s, local.start(), local.end(), null);
+            ShiftStore.insertRow(conn, table, c.date(), c.role(),
+                c.hours(), c.tips(), c.wage(), time(c.start()), time(c.end()), c.uuid());
+            received(conn, table, c.uuid(), from);
+            return REPLACED;
+        }
+
+        // ours wins; give it a new mod_seq (and no origin) so the peer is sent it and converges too
+        if (local.target().readOnly()) return UNCHANGED;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE " + local.target().table() + " SET mod_seq = ?, origin = NULL WHERE id = ?")) {
+            ps.setLong(1, nextSeq(conn));
+            ps.setInt(2, s.id());
+            ps.executeUpdate();
+        }
+        return UNCHANGED;
+    }
+
+    // marks a row or tombstone as received from `from`, so exports to that node leave it out
+    private static void received(Connection conn, String table, String uuid, String from) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE " + table + " SET origin = ? WHERE uuid = ?")) {
+            ps.setString(1, from);
+            ps.setString(2, uuid);
+            ps.executeUpdate();
+        }
+    }
+
+    private static Local find(Connection conn, String uuid, List<Target> targets) throws SQLException {
+        for (Target t : targets) {
+            String sql = """
+                SELECT id, shift_date, role, hours_worked, tips, wage_rate, start_time, end_time
+                FROM %s
+                WHERE uuid = ?
+            """.formatted(t.table());
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, uuid);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) return new Local(t, ShiftStore.readShift(rs), rs.getString(7), rs.getString(8));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void writable(Local local) throws SQLException {
+        if (local.target().readOnly()) {
+            throw new SQLException("Year " + local.shift().date().getYear()
+                + " is archived read-only (use 'partitions' to unlock it).");
+        }
+    }
+
+    // ================= HELPERS =================
+
+    // every shifts table, attached; must run outside a transaction
+    private static List<Target> targets(Connection conn) throws SQLException {
+        List<Target> out = new ArrayList<>();
+        if (!ShiftPartitions.isPartitioned(conn)) {
+            out.add(new Target("shifts", false));
+            return out;
+        }
+        ShiftPartitions.attachAll(conn);
+        for (ShiftPartitions.Partition p : ShiftPartitions.list(conn)) {
+            out.add(new Target(p.alias() + ".shifts", p.readOnly()));
+        }
+        return out;
+    }
+
+    private static String nodeId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT node_id FROM sync_meta WHERE id = 1")) {
+            if (!rs.next()) throw new SQLException("sync_meta is missing");
+            return rs.getString(1);
+        }
+    }
+
+    private static long currentSeq(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT seq FROM sync_meta WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    static Set<String> columns(Connection conn, String schema, String table) throws SQLException {
+        Set<String> out = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + schema + ".table_info(" + table + ")")) {
+            while (rs.next()) out.add(rs.getString("name"));
+        }
+        return out;
+    }
+
+    private static Peer findPeer(Connection conn, String prefix) throws SQLException {
+        List<Peer> found = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT node_id, sent_seq, received_seq FROM sync_peers WHERE substr(node_id, 1, ?) = ?")) {
+            ps.setInt(1, prefix.length());
+            ps.setString(2, prefix.toLowerCase());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) found.add(new Peer(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+            }
+        }
+        if (found.isEmpty()) throw new SQLException("No known peer " + prefix + " (import one of its changesets first).");
+        if (found.size() > 1) throw new SQLException("Peer " + prefix + " is ambiguous.");
+        return found.get(0);
+    }
+
+    // total order on a shift's contents, identical on every machine
+    private static String canonical(LocalDate date, String role, double hours, double tips, double wage,
+                                    String start, String end) {
+        return date + "|" + role + "|" + Double.toString(hours) + "|" + Double.toString(tips) + "|" + Double.toString(wage)
+            + "|" + (start == null ? "" : start) + "|" + (end == null ? "" : end);
+    }
+
+    private static LocalDateTime time(String iso) {
+        return iso == null ? null : LocalDateTime.parse(iso);
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    // ================= DATA =================
+
+    // start/end as stored (ISO local date-time), null when the shift has no times
+    private record Change(byte kind, String uuid, LocalDate date, String role, double hours, double tips, double wage,
+                          String start, String end) {}
+
+    private record Target(String table, boolean readOnly) {}
+
+    private record Local(Target target, ShiftStore.Shift shift, String start, String end) {}
+
+    record Peer(String nodeId, long sentSeq, long receivedSeq) {}
+
+    record Status(String nodeId, long seq, List<Peer> peers) {}
+
+    static final class ExportResult {
+        File file;
+        String peer;              // null for a full export
+        long since;
+        long upTo;
+        int shifts;
+        int tombstones;
+        long bytes;
+        long ms;
+    }
+
+    static final class ImportResult {
+        String from;
+        int inserted;
+        int replaced;
+        int deleted;
+        int unchanged;
+        long ms;
+    }
+}
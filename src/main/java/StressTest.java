@@ -0,0 +1,106 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+// Multi-process stress test for the shared database.
+//
+// Spawns several JVMs that insert shifts and read summaries against one temp database at the
+// same time (like the FX app and a CLI script sharing tip_calculator.db), then checks that
+// every shift landed. Exits non-zero on any lost shift or failed write.
+//
+//   mvn exec:java -Dexec.mainClass=StressTest -Dexec.args="[processes] [shiftsPerProcess]"
+public class StressTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("worker")) {
+            worker(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int perProcess = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Path dir = Files.createTempDirectory("tipcalc-stress");
+        Path db = dir.resolve("stress.db");
+        System.setProperty("tipcalc.db", db.toString());
+        ShiftStore.initDatabase();
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        System.out.println("Stress: " + processes + " processes x " + perProcess + " shifts -> " + db);
+        long start = System.nanoTime();
+
+        List<Process> workers = new ArrayList<>();
+        for (int w = 0; w < processes; w++) {
+            workers.add(new ProcessBuilder(java, "-cp", classpath, "-Dtipcalc.db=" + db,
+                    StressTest.class.getName(), "worker", String.valueOf(w), String.valueOf(perProcess))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start());
+        }
+
+        boolean ok = true;
+        for (Process p : workers) {
+            if (p.waitFor() != 0) ok = false;
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        int expected = processes * perProcess;
+        int actual = countShifts();
+
+        System.out.println("Expected " + expected + " shifts, found " + actual + " in " + elapsedMs + " ms.");
+        if (actual != expected) ok = false;
+
+        deleteQuietly(dir);
+        if (!ok) {
+            System.out.println("STRESS FAILED");
+            System.exit(1);
+        }
+        System.out.println("STRESS OK");
+    }
+
+    // Each worker writes into its own month so its rows can be told apart, and reads a summary
+    // between writes so readers and writers overlap.
+    private static void worker(int id, int shifts) {
+        YearMonth month = YearMonth.of(2000 + id / 12, id % 12 + 1);
+
+        for (int i = 0; i < shifts; i++) {
+            LocalDate date = month.atDay(i % month.lengthOfMonth() + 1);
+            ShiftStore.insertShift(date, "SERVER", 5.0, 100.0 + i, 3.00);
+            ShiftStore.getMonthlySummary(month);
+        }
+
+        int found = ShiftStore.getMonthlySummary(month).shiftCount;
+        System.out.println("worker " + id + ": wrote " + found + "/" + shifts + " [" + Database.contentionReport() + "]");
+
+        if (found != shifts || Database.failedWrites() > 0) System.exit(1);
+    }
+
+    private static int countShifts() throws SQLException {
+        try (Connection conn = Database.open();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM shifts")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        try {
+            Files.deleteIfExists(dir);
+        } catch (IOException ignored) {}
+    }
+}
@@ -1,13 +1,16 @@
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.NumberFormat;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Scanner;
 
 public class TipCalculator {
@@ -17,11 +20,10 @@ public class TipCalculator {
     private static final double HOST_WAGE   = 11.50;
     private static final double TA_WAGE     = 12.00;
 
-    // SQLite database file
-    private static final String DB_URL = "jdbc:sqlite:tip_calculator.db";
-
     public static void main(String[] args) {
-        initDatabase();
+        // failures are logged in full to the log file; the user gets one line on stderr, clear of piped output
+        Log.notifyWith(System.err::println);
+        ShiftStore.initDatabase();
 
         try (Scanner scanner = new Scanner(System.in)) {
             while (true) {
@@ -36,9 +38,22 @@ public class TipCalculator {
                     case "3", "list" -> listShifts(scanner);
                     case "4", "delete", "del" -> deleteShiftByDateFlow(scanner);
                     case "5", "exit" -> {
+                        if (Database.hadContention()) {
+                            System.out.println("Database contention this session: " + Database.contentionReport());
+                        }
                         System.out.println("Goodbye!");
                         return;
                     }
+                    case "percentiles", "pct" -> percentilesFlow(scanner);
+                    case "partitions" -> partitionsFlow(scanner);
+                    case "federate", "fed" -> federateFlow(scanner);
+                    case "simulate", "sim" -> simulateFlow(scanner);
+                    case "explain" -> explainFlow(scanner);
+                    case "sync" -> syncFlow(scanner);
+                    case "onfloor", "who" -> onFloorFlow(scanner);
+                    case "heatmap" -> heatmapFlow(scanner);
+                    case "backup" -> backupFlow(false);
+                    case "snapshot" -> backupFlow(true);
                     case "help", "h", "?" -> printHelp();
                     default -> System.out.println(
                         "Invalid option. Please enter 1-5 or type: log, summary, list, delete, help, exit."
@@ -71,6 +86,16 @@ public class TipCalculator {
         System.out.println("  summary   -> Monthly summary");
         System.out.println("  list      -> List shifts");
         System.out.println("  delete    -> Delete shifts by date");
+        System.out.println("  pct       -> Tip and $/hr percentiles over a range of months");
+        System.out.println("  partitions -> Year partition files (migrate, lock, unlock)");
+        System.out.println("  fed       -> Combined summary across several location databases");
+        System.out.println("  simulate  -> Month-by-month earnings under alternative wage tables");
+        System.out.println("  onfloor   -> Who was working at a time or between two times (shifts with a start time)");
+        System.out.println("  heatmap   -> Earnings by weekday and hour of day for a month");
+        System.out.println("  explain   -> Query plans for the built-in queries, with index suggestions");
+        System.out.println("  backup    -> Save the in-memory database to disk now (snapshot on a file database)");
+        System.out.println("  snapshot  -> Copy the live database to snapshots/<name>-<timestamp>.db");
+        System.out.println("  sync      -> Exchange changeset files with another copy of the database");
         System.out.println("  exit      -> Quit (or cancel a menu prompt)");
     }
 
@@ -122,30 +147,56 @@ public class TipCalculator {
         Double hoursWorked = readDoubleMin(scanner, "Hours worked tonight: ", 0.01);
         if (hoursWorked == null) return; // user typed "exit"
 
+        Optional<LocalTime> start = readOptionalTime(scanner, "Start time (HH:MM) or press Enter to skip: ");
+        if (start == null) return; // user typed "exit"
+
         double wageEarnings = wageRate * hoursWorked;
         double totalEarnings = wageEarnings + tips;
+
+        // priced before saving: as the newest shift of its day, which it is about to become
+        PayRules rules = PayRules.current();
+        PayRules.Pay pay = null;
+        if (rules.isConfigured()) {
+            try {
+                pay = rules.payFor(new ShiftStore.Shift(Integer.MAX_VALUE, date, role, hoursWorked, tips, wageRate));
+                totalEarnings = pay.total();
+            } catch (SQLException e) {
+                Log.warn("pay_rules_unavailable", e, "date", date, "role", role);
+            }
+        }
         double earningsPerHour = totalEarnings / hoursWorked;
 
-        insertShift(date, role, hoursWorked, tips, wageRate);
+        if (!ShiftStore.insertShift(date, role, hoursWorked, tips, wageRate, start.orElse(null))) return;
 
         NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
         System.out.println("\n=================== Shift Saved ===================");
         System.out.println("Date: " + date);
+        start.ifPresent(t -> System.out.println("Time: " + t + " - " + t.plusMinutes(Math.round(hoursWorked * 60))));
         System.out.println("Role: " + role);
         System.out.println("Wage Rate: " + currency.format(wageRate) + "/hour");
         System.out.println("Tips: " + currency.format(tips));
         System.out.println("Hours Worked: " + round2(hoursWorked));
+        if (pay != null) printPayAdjustments(pay.overtimePremium(), pay.holidayPremium(), pay.tipOut(), pay.topUp(), currency);
         System.out.println("Total Earnings: " + currency.format(totalEarnings));
         System.out.println("Earnings Per Hour: " + currency.format(earningsPerHour));
     }
 
+    // only the rules that changed anything
+    private static void printPayAdjustments(double overtime, double holiday, double tipOut, double topUp,
+                                            NumberFormat currency) {
+        if (overtime > 0) System.out.println("Overtime Premium: " + currency.format(overtime));
+        if (holiday > 0) System.out.println("Holiday Premium: " + currency.format(holiday));
+        if (tipOut > 0) System.out.println("Tip-out to Hosts: -" + currency.format(tipOut));
+        if (topUp > 0) System.out.println("Minimum Wage Top-up: " + currency.format(topUp));
+    }
+
     // ================= OPTION 2: MONTHLY SUMMARY =================
 
     private static void monthlySummary(Scanner scanner) {
         YearMonth ym = readYearMonth(scanner, "Enter month (YYYY-MM): ");
         if (ym == null) return; // user typed "exit"
 
-        MonthlySummary ms = getMonthlySummary(ym);
+        ShiftStore.MonthlySummary ms = ShiftStore.getMonthlySummary(ym);
 
         NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
 
@@ -161,6 +212,71 @@ public class TipCalculator {
         } else {
             System.out.println("Average $/hr: N/A");
         }
+
+        if (PayRules.current().isConfigured() && ms.shiftCount > 0) {
+            PayRules.Totals pay = ShiftStore.getPayroll(ym);
+            System.out.println("\n------------------- Payroll (pay rules) -------------------");
+            printPayAdjustments(pay.overtimePremium, pay.holidayPremium, pay.tipOut, pay.topUp, currency);
+            if (pay.overtimeHours > 0) System.out.println("Overtime Hours: " + round2(pay.overtimeHours));
+            System.out.println("Payroll Total: " + currency.format(pay.total()));
+        }
+
+        printPercentiles(ShiftStore.getPercentiles(ym, ym), currency);
+        printForecast(ShiftStore.getMonthlyForecast(ym), currency);
+    }
+
+    private static void percentilesFlow(Scanner scanner) {
+        YearMonth from = readYearMonth(scanner, "From month (YYYY-MM): ");
+        if (from == null) return; // user typed "exit"
+
+        YearMonth to = readYearMonth(scanner, "Through month (YYYY-MM): ");
+        if (to == null) return; // user typed "exit"
+
+        if (to.isBefore(from)) {
+            YearMonth t = from;
+            from = to;
+            to = t;
+        }
+
+        System.out.println("\n=================== Percentiles ===================");
+        System.out.println("Months: " + from + " to " + to);
+        printPercentiles(ShiftStore.getPercentiles(from, to), NumberFormat.getCurrencyInstance(Locale.US));
+    }
+
+    private static void printPercentiles(Map<String, ShiftSketches.Percentiles> byRole, NumberFormat currency) {
+        if (byRole.isEmpty()) return;
+
+        System.out.println("\n------------------- Percentiles (p10 / median / p90) -------------------");
+        for (Map.Entry<String, ShiftSketches.Percentiles> e : byRole.entrySet()) {
+            ShiftSketches.Percentiles p = e.getValue();
+            System.out.println(e.getKey() + " (" + p.shifts() + " shifts)");
+            System.out.println("  Tips/shift: " + formatQuantiles(p.tips(), currency));
+            System.out.println("  $/hr:       " + formatQuantiles(p.perHour(), currency));
+        }
+    }
+
+    private static String formatQuantiles(ShiftSketches.Quantiles q, NumberFormat currency) {
+        if (Double.isNaN(q.p50())) return "N/A";
+        return currency.format(q.p10()) + " / " + currency.format(q.p50()) + " / " + currency.format(q.p90());
+    }
+
+    private static void printForecast(ShiftStats.Forecast f, NumberFormat currency) {
+        if (f == null || f.remainingDays == 0) return;
+
+        System.out.println("\n------------------- Month-end Forecast -------------------");
+        if (f.historyShifts == 0) {
+            System.out.println("Not enough history to forecast yet.");
+            return;
+        }
+        System.out.println("Days Remaining: " + f.remainingDays + " (based on " + f.historyShifts + " past shifts)");
+        System.out.println("Projected Earnings: " + formatBand(f.earnings, currency));
+        System.out.println("Projected Tips: " + formatBand(f.tips, currency));
+        System.out.println("Projected $/hr: " + (f.perHour == null ? "N/A" : formatBand(f.perHour, currency)));
+    }
+
+    private static String formatBand(ShiftStats.Band b, NumberFormat currency) {
+        return currency.format(b.expected())
+            + " (" + currency.format(b.low()) + " - " + currency.format(b.high()) + ")";
     }
 
     // ================= OPTION 3: LIST SHIFTS =================
@@ -169,7 +285,20 @@ public class TipCalculator {
         YearMonth ym = readYearMonth(scanner, "Enter month (YYYY-MM): ");
         if (ym == null) return; // user typed "exit"
 
-        listShiftsForMonth(ym);
+        NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+
+        List<ShiftStore.Shift> shifts = ShiftStore.fetchShiftsForMonth(ym);
+        for (ShiftStore.Shift s : shifts) {
+            System.out.println(
+                "[" + s.date() + "] " + s.role()
+                + " | Hours: " + round2(s.hours())
+                + " | Tips: " + currency.format(s.tips())
+                + " | Wage: " + currency.format(s.wage())
+            );
+        }
+        if (shifts.isEmpty()) {
+            System.out.println("No shifts found for " + ym + ".");
+        }
     }
 
     // ================= OPTION 4: DELETE =================
@@ -178,7 +307,7 @@ public class TipCalculator {
         LocalDate date = readDate(scanner, "Enter shift date to delete (YYYY-MM-DD): ");
         if (date == null) return; // user typed "exit"
 
-        int rowsDeleted = deleteShiftsByDate(date);
+        int rowsDeleted = ShiftStore.deleteShiftsByDate(date);
 
         if (rowsDeleted > 0) {
             System.out.println("Deleted " + rowsDeleted + " shift(s) on " + date + ".");
@@ -187,130 +316,347 @@ public class TipCalculator {
         }
     }
 
-    // ================= DATABASE =================
-
-    private static void initDatabase() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS shifts (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                shift_date TEXT NOT NULL,
-                role TEXT NOT NULL,
-                hours_worked REAL NOT NULL,
-                tips REAL NOT NULL,
-                wage_rate REAL NOT NULL
-            );
-        """;
+    // ================= FEDERATION =================
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            System.out.println("Failed to init DB: " + e.getMessage());
+    private static void federateFlow(Scanner scanner) {
+        System.out.print("Database files, comma separated (type 'exit' to cancel): ");
+        String input = scanner.nextLine().trim();
+        if (isExit(input) || input.isEmpty()) return;
+
+        List<String> files = new ArrayList<>();
+        for (String f : input.split(",")) {
+            if (!f.isBlank()) files.add(f.trim());
+        }
+
+        YearMonth from = readYearMonth(scanner, "From month (YYYY-MM): ");
+        if (from == null) return; // user typed "exit"
+
+        YearMonth to = readYearMonth(scanner, "Through month (YYYY-MM): ");
+        if (to == null) return; // user typed "exit"
+
+        if (to.isBefore(from)) {
+            YearMonth t = from;
+            from = to;
+            to = t;
+        }
+
+        Federation.Result r = Federation.query(files, from.atDay(1), to.atEndOfMonth(), 10);
+        NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+
+        System.out.println("\n=================== All Locations ===================");
+        System.out.println("Months: " + from + " to " + to + " | Locations: " + files.size());
+        System.out.println("Shifts Logged: " + r.total.shiftCount);
+        System.out.println("Total Hours: " + round2(r.total.totalHours));
+        System.out.println("Total Tips: " + currency.format(r.total.totalTips));
+        System.out.println("Total Earnings: " + currency.format(r.total.totalEarnings));
+
+        System.out.println("\n------------------- By Role -------------------");
+        for (Map.Entry<String, ShiftStore.MonthlySummary> e : r.byRole.entrySet()) {
+            ShiftStore.MonthlySummary ms = e.getValue();
+            String avg = ms.totalHours > 0 ? currency.format(ms.totalEarnings / ms.totalHours) : "N/A";
+            System.out.println(e.getKey() + " | Shifts: " + ms.shiftCount
+                + " | Hours: " + round2(ms.totalHours)
+                + " | Tips: " + currency.format(ms.totalTips)
+                + " | Earnings: " + currency.format(ms.totalEarnings)
+                + " | Avg $/hr: " + avg);
         }
+
+        System.out.println("\n------------------- Top Earning Shifts -------------------");
+        for (Federation.LocatedShift ls : r.top) {
+            ShiftStore.Shift s = ls.shift();
+            System.out.println("[" + s.date() + "] " + ls.location() + " | " + s.role()
+                + " | Hours: " + round2(s.hours())
+                + " | Total: " + currency.format(s.total()));
+        }
+
+        System.out.println("\n------------------- Per Location -------------------");
+        for (Federation.Location loc : r.locations) {
+            System.out.println(loc.name() + ": " + (loc.error() == null
+                ? loc.shifts() + " shift(s) in " + loc.elapsedMs() + " ms"
+                : "FAILED (" + loc.error() + ")"));
+        }
+        System.out.println("Total: " + r.elapsedMs + " ms on " + r.parallelism + " thread(s)");
     }
 
-    private static void insertShift(LocalDate date, String role, double hours, double tips, double wage) {
-        String sql = "INSERT INTO shifts VALUES (NULL, ?, ?, ?, ?, ?)";
+    // ================= SIMULATION =================
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    private static void simulateFlow(Scanner scanner) {
+        System.out.println("Current rates: SERVER=" + SERVER_WAGE + ",HOST=" + HOST_WAGE + ",TA=" + TA_WAGE);
+        System.out.print("Wage tables as ROLE=RATE lists, tables separated by ';' (type 'exit' to cancel): ");
+        String input = scanner.nextLine().trim();
+        if (isExit(input) || input.isEmpty()) return;
 
-            ps.setString(1, date.toString());
-            ps.setString(2, role);
-            ps.setDouble(3, hours);
-            ps.setDouble(4, tips);
-            ps.setDouble(5, wage);
-            ps.executeUpdate();
+        List<WageSimulation.WageTable> tables = new ArrayList<>();
+        try {
+            for (String spec : input.split(";")) {
+                if (spec.isBlank()) continue;
+                tables.add(WageSimulation.WageTable.parse(String.valueOf((char) ('A' + tables.size())), spec));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid wage table: " + e.getMessage());
+            return;
+        }
+        if (tables.isEmpty()) return;
 
+        WageSimulation.Result r;
+        try {
+            r = WageSimulation.run(tables);
         } catch (SQLException e) {
-            System.out.println("Insert failed: " + e.getMessage());
+            Log.error("simulation_failed", e);
+            return;
         }
+
+        NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+        System.out.println("\n=================== Wage Simulation ===================");
+        for (WageSimulation.WageTable t : tables) {
+            System.out.println("Table " + t.name() + ": " + t.rates());
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-8s %14s", "Month", "Stored"));
+        for (WageSimulation.WageTable t : tables) header.append(String.format(" %14s", t.name() + " delta"));
+        System.out.println("\n" + header);
+
+        double[] totals = new double[tables.size()];
+        double storedTotal = 0;
+        for (int m = 0; m < r.months.size(); m++) {
+            if (r.stored[m] == 0) continue; // nothing logged that month
+            StringBuilder line = new StringBuilder(String.format("%-8s %14s", r.months.get(m), currency.format(r.stored[m])));
+            for (int t = 0; t < tables.size(); t++) {
+                line.append(String.format(" %14s", signed(r.delta[t][m], currency)));
+                totals[t] += r.delta[t][m];
+            }
+            storedTotal += r.stored[m];
+            System.out.println(line);
+        }
+
+        StringBuilder total = new StringBuilder(String.format("%-8s %14s", "Total", currency.format(storedTotal)));
+        for (double d : totals) total.append(String.format(" %14s", signed(d, currency)));
+        System.out.println(total);
+
+        System.out.println("\n" + r.shifts + " shift(s): loaded in " + r.loadMs + " ms, simulated in "
+            + r.simulateMs + " ms (" + r.threads + " thread(s))");
     }
 
-    private static int deleteShiftsByDate(LocalDate date) {
-        String sql = "DELETE FROM shifts WHERE shift_date = ?";
+    private static String signed(double v, NumberFormat currency) {
+        return (v < 0 ? "-" : "+") + currency.format(Math.abs(v));
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    // ================= SHIFT TIMES =================
 
-            ps.setString(1, date.toString());
-            return ps.executeUpdate();
+    private static void onFloorFlow(Scanner scanner) {
+        LocalDate date = readDate(scanner, "Date (YYYY-MM-DD) or press Enter for today: ");
+        if (date == null) return; // user typed "exit"
 
+        Optional<LocalTime> fromTime = readOptionalTime(scanner, "From (HH:MM) or press Enter for now: ");
+        if (fromTime == null) return; // user typed "exit"
+        LocalDateTime from = date.atTime(fromTime.orElse(LocalTime.now().withSecond(0).withNano(0)));
+
+        Optional<LocalTime> toTime = readOptionalTime(scanner, "Until (HH:MM) or press Enter for just that moment: ");
+        if (toTime == null) return; // user typed "exit"
+        LocalDateTime to = toTime.map(date::atTime).orElse(from.plusMinutes(1));
+        if (!to.isAfter(from)) to = to.plusDays(1); // e.g. 22:00 until 02:00
+
+        try {
+            ShiftIntervals index = ShiftStore.loadIntervals(from.toLocalDate(), to.toLocalDate());
+            List<ShiftIntervals.Interval> on = index.overlapping(from, to);
+
+            NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+            System.out.println("\n=================== On the Floor ===================");
+            System.out.println(from.toLocalDate() + " " + from.toLocalTime()
+                + (toTime.isPresent() ? " - " + to.toLocalTime() : "") + ": " + on.size() + " shift(s)");
+            for (ShiftIntervals.Interval i : on) {
+                System.out.println(String.format("  %-7s %s - %s  %s", i.role(), i.start().toLocalTime(),
+                    i.end().toLocalTime(), currency.format(i.earnings())));
+            }
         } catch (SQLException e) {
-            System.out.println("Delete failed: " + e.getMessage());
-            return 0;
+            Log.error("lookup_failed", e, "from", from, "to", to);
         }
     }
 
-    // ================= QUERIES =================
+    private static void heatmapFlow(Scanner scanner) {
+        YearMonth ym = readYearMonth(scanner, "Enter month (YYYY-MM): ");
+        if (ym == null) return; // user typed "exit"
 
-    private static MonthlySummary getMonthlySummary(YearMonth ym) {
-        String sql = """
-            SELECT COUNT(*), SUM(hours_worked), SUM(tips),
-                   SUM(tips + hours_worked * wage_rate)
-            FROM shifts
-            WHERE shift_date BETWEEN ? AND ?
-        """;
+        ShiftIntervals index;
+        try {
+            index = ShiftStore.loadIntervals(ym.atDay(1), ym.atEndOfMonth());
+        } catch (SQLException e) {
+            Log.error("heatmap_failed", e, "month", ym);
+            return;
+        }
+        if (index.size() == 0) {
+            System.out.println("No shifts with a start time in " + ym + ".");
+            return;
+        }
+        ShiftIntervals.Heatmap map = index.heatmap(ym.atDay(1), ym.atEndOfMonth());
+
+        // earnings in each cell, spread over the hours each shift covered; $/hr is per staffed hour
+        System.out.println("\n=================== Earnings by Hour (" + ym + ") ===================");
+        System.out.println("Hour      Mon     Tue     Wed     Thu     Fri     Sat     Sun    $/hr");
+        for (int h = 0; h < 24; h++) {
+            double earned = 0;
+            double staffed = 0;
+            StringBuilder row = new StringBuilder(String.format("%02d:00", h));
+            for (int d = 0; d < 7; d++) {
+                earned += map.earnings[d][h];
+                staffed += map.staffHours[d][h];
+                row.append(map.staffHours[d][h] > 0 ? String.format("%8.0f", map.earnings[d][h]) : "       -");
+            }
+            if (staffed == 0) continue;
+            row.append(String.format("%8.2f", earned / staffed));
+            System.out.println(row);
+        }
+    }
 
-        MonthlySummary ms = new MonthlySummary();
+    // ================= PARTITIONS =================
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    private static void partitionsFlow(Scanner scanner) {
+        try {
+            List<ShiftPartitions.Partition> parts = ShiftStore.listPartitions();
 
-            ps.setString(1, ym.atDay(1).toString());
-            ps.setString(2, ym.atEndOfMonth().toString());
+            System.out.println("\n=================== Partitions ===================");
+            if (parts.isEmpty()) {
+                System.out.println("Single-file database (not partitioned).");
+            }
+            for (ShiftPartitions.Partition p : parts) {
+                System.out.println(p.year() + " -> " + p.file().getName() + (p.readOnly() ? " (read-only)" : ""));
+            }
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    ms.shiftCount = rs.getInt(1);
-                    ms.totalHours = rs.getDouble(2);
-                    ms.totalTips = rs.getDouble(3);
-                    ms.totalEarnings = rs.getDouble(4);
+            System.out.print("Action: migrate, lock YEAR, unlock YEAR, or Enter to go back: ");
+            String[] action = scanner.nextLine().trim().toLowerCase().split("\\s+");
+
+            switch (action[0]) {
+                case "migrate" -> {
+                    long moved = ShiftStore.migrateToPartitions();
+                    System.out.println("Moved " + moved + " shift(s) into yearly partitions.");
+                }
+                case "lock", "unlock" -> {
+                    if (action.length < 2) {
+                        System.out.println("Which year?");
+                        return;
+                    }
+                    int year = Integer.parseInt(action[1]);
+                    ShiftStore.setPartitionReadOnly(year, action[0].equals("lock"));
+                    System.out.println(year + (action[0].equals("lock") ? " is now read-only." : " is now writable."));
                 }
+                case "", "exit" -> {}
+                default -> System.out.println("Unknown action.");
             }
-
         } catch (SQLException e) {
-            System.out.println("Summary failed: " + e.getMessage());
+            Log.error("partitions_failed", e);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid year.");
         }
-
-        return ms;
     }
 
-    private static void listShiftsForMonth(YearMonth ym) {
-        String sql = """
-            SELECT shift_date, role, hours_worked, tips, wage_rate
-            FROM shifts
-            WHERE shift_date BETWEEN ? AND ?
-            ORDER BY shift_date, id
-        """;
+    // ================= SYNC =================
 
-        NumberFormat currency = NumberFormat.getCurrencyInstance(Locale.US);
+    private static void syncFlow(Scanner scanner) {
+        try {
+            ShiftSync.Status status = ShiftSync.status();
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, ym.atDay(1).toString());
-            ps.setString(2, ym.atEndOfMonth().toString());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                boolean any = false;
-                while (rs.next()) {
-                    any = true;
-                    System.out.println(
-                        "[" + rs.getString(1) + "] " + rs.getString(2)
-                        + " | Hours: " + round2(rs.getDouble(3))
-                        + " | Tips: " + currency.format(rs.getDouble(4))
-                        + " | Wage: " + currency.format(rs.getDouble(5))
-                    );
+            System.out.println("\n=================== Sync ===================");
+            System.out.println("This database: " + status.nodeId() + " (change " + status.seq() + ")");
+            if (status.peers().isEmpty()) {
+                System.out.println("No peers yet.");
+            }
+            for (ShiftSync.Peer p : status.peers()) {
+                System.out.println("Peer " + p.nodeId() + ": acknowledged up to " + p.sentSeq()
+                    + ", received up to " + p.receivedSeq());
+            }
+
+            System.out.print("Action: export FILE [PEER], import FILE, new-id, or Enter to go back: ");
+            String[] action = scanner.nextLine().trim().split("\\s+");
+
+            switch (action[0].toLowerCase()) {
+                case "export" -> {
+                    if (action.length < 2) {
+                        System.out.println("Which file?");
+                        return;
+                    }
+                    ShiftSync.ExportResult r = ShiftSync.export(new File(action[1]), action.length > 2 ? action[2] : null);
+                    System.out.println("Exported " + r.shifts + " shift(s) and " + r.tombstones + " delete(s)"
+                        + (r.peer == null ? " (full history)" : " for " + r.peer)
+                        + " to " + r.file + ": " + r.bytes + " bytes in " + r.ms + " ms.");
+                }
+                case "import" -> {
+                    if (action.length < 2) {
+                        System.out.println("Which file?");
+                        return;
+                    }
+                    ShiftSync.ImportResult r = ShiftSync.importFrom(new File(action[1]));
+                    System.out.println("Imported from " + r.from + ": " + r.inserted + " new, " + r.replaced
+                        + " replaced, " + r.deleted + " deleted, " + r.unchanged + " unchanged in " + r.ms + " ms.");
+                }
+                case "new-id" -> {
+                    // for a copy of a database file that was made before it recorded where it lives
+                    System.out.println("This database is now " + ShiftSync.renewNodeId() + ".");
                 }
-                if (!any) {
-                    System.out.println("No shifts found for " + ym + ".");
+                case "", "exit" -> {}
+                default -> System.out.println("Unknown action.");
+            }
+        } catch (SQLException | IOException e) {
+            Log.error("sync_failed", e);
+        }
+    }
+
+    // ================= DIAGNOSTICS =================
+
+    private static void explainFlow(Scanner scanner) {
+        System.out.print("Month to explain (YYYY-MM) or press Enter for this month (type 'exit' to cancel): ");
+        String input = scanner.nextLine().trim();
+        if (isExit(input)) return;
+
+        YearMonth ym;
+        try {
+            ym = input.isEmpty() ? YearMonth.now() : YearMonth.parse(input);
+        } catch (Exception e) {
+            System.out.println("Invalid month.");
+            return;
+        }
+
+        System.out.println("\n=================== Query Plans ===================");
+        List<String> suggestions = new ArrayList<>();
+        for (Map.Entry<String, List<QueryLog.Trace>> e : ShiftStore.explainBuiltins(ym).entrySet()) {
+            System.out.println("\n[" + e.getKey() + "]");
+            for (QueryLog.Trace t : e.getValue()) {
+                System.out.println(String.format("  %.2f ms  %s", t.nanos() / 1e6, t.sql()));
+                for (String line : t.plan()) System.out.println("      " + line);
+
+                if (QueryLog.isFullScanOfShifts(t)) {
+                    String index = QueryLog.suggestIndex(t);
+                    System.out.println("      !! full scan of shifts" + (index == null ? "" : "; suggest: " + index));
+                    if (index != null && !suggestions.contains(index)) suggestions.add(index);
                 }
             }
+        }
 
-        } catch (SQLException e) {
-            System.out.println("List failed: " + e.getMessage());
+        if (!suggestions.isEmpty()) {
+            System.out.println("\n------------------- Suggested Indexes -------------------");
+            for (String s : suggestions) System.out.println(s + ";");
+        }
+
+        System.out.println("\n------------------- Slowest Statements This Session -------------------");
+        for (Map.Entry<String, QueryLog.Stat> e : QueryLog.slowest(5)) {
+            QueryLog.Stat s = e.getValue();
+            System.out.println(String.format("%8.1f ms total  %5d run(s)  max %.1f ms  %s",
+                s.totalNanos() / 1e6, s.count(), s.maxNanos() / 1e6, e.getKey()));
         }
+        System.out.println("\nStatements over " + QueryLog.slowThresholdMs() + " ms are logged (event slow_query) to "
+            + Log.path().toAbsolutePath());
+    }
+
+    // ================= BACKUPS =================
+
+    // runs in the background; the result is printed whenever it lands
+    private static void backupFlow(boolean snapshot) {
+        boolean persist = !snapshot && Database.inMemory();
+        System.out.println(persist ? "Saving to disk in the background..." : "Writing snapshot in the background...");
+
+        (persist ? Backups.persist() : Backups.snapshot()).whenComplete((file, err) -> {
+            if (err != null) Log.error("backup_failed", err);
+            else System.out.println("\nBackup written: " + file);
+        });
     }
 
     // ================= HELPERS =================
@@ -347,6 +693,23 @@ public class TipCalculator {
         }
     }
 
+    // empty when the user just presses Enter, null on exit
+    private static Optional<LocalTime> readOptionalTime(Scanner s, String p) {
+        while (true) {
+            System.out.print(p + " (type 'exit' to cancel): ");
+            String v = s.nextLine().trim();
+
+            if (isExit(v)) return null;
+            if (v.isEmpty()) return Optional.empty();
+
+            try {
+                return Optional.of(LocalTime.parse(v.length() == 4 ? "0" + v : v));
+            } catch (Exception e) {
+                System.out.println("Invalid time.");
+            }
+        }
+    }
+
     private static LocalDate readDate(Scanner s, String p) {
         while (true) {
             System.out.print(p + " (type 'exit' to cancel): ");
@@ -381,11 +744,4 @@ public class TipCalculator {
     private static String round2(double v) {
         return String.format("%.2f", v);
     }
-
-    private static class MonthlySummary {
-        int shiftCount;
-        double totalHours;
-        double totalTips;
-        double totalEarnings;
-    }
 }
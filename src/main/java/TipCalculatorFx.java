@@ -1,4 +1,5 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -13,11 +14,21 @@ import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
-import java.sql.*;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 import java.text.NumberFormat;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 public class TipCalculatorFx extends Application {
 
@@ -26,9 +37,6 @@ public class TipCalculatorFx extends Application {
     private static final double HOST_WAGE   = 11.50;
     private static final double TA_WAGE     = 12.00;
 
-    // ===== DB =====
-    private static final String DB_URL = "jdbc:sqlite:tip_calculator.db";
-
     // ===== UI window drag =====
     private double dragOffsetX;
     private double dragOffsetY;
@@ -41,21 +49,56 @@ public class TipCalculatorFx extends Application {
     // content area that changes
     private final StackPane content = new StackPane();
 
+    // ===== live updates =====
+    private static final long WATCH_INTERVAL_MS = Long.getLong("tipcalc.watchMs", 500);
+    private ShiftChangeFeed changeFeed;
+    private LocalDate listedFrom;                      // date range currently in shiftRows
+    private LocalDate listedTo;
+    private YearMonth summaryMonth;                    // month currently in the summary view
+    private ShiftStore.MonthlySummary summaryShown;
+    private SummaryDetails summaryDetails;             // for summaryMonth; null until computed
+    private boolean detailsRunning;                    // FX thread only
+    private boolean detailsStale;
+    private Label summaryOut;
+    private final ExecutorService summaryWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "summary-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService listWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "shift-list-load");
+        t.setDaemon(true);
+        return t;
+    });
+    private long loadGeneration;                       // FX thread only; the newest load wins
+    private List<ShiftChangeFeed.Change> heldChanges;  // live changes seen while a load runs
+
+    // ===== views =====
+    // benchmark-only: tipcalc.viewCache=false restores rebuild-on-click to measure against; not a
+    // setting for normal use
+    private static final boolean CACHE_VIEWS = !"false".equals(System.getProperty("tipcalc.viewCache"));
+    private final Map<String, Region> views = new HashMap<>();
+
+    // ===== filter bar =====
+    private final ObservableList<ShiftRow> visibleRows = FXCollections.observableArrayList();
+    private ShiftIndex shiftIndex = buildIndex(List.of()); // over shiftRows, patched with them
+    private ShiftFilter filter = ShiftFilter.NONE;
+    private TableView<ShiftRow> listTable;
+
     @Override
     public void start(Stage stage) {
-        initDatabase();
+        // problems go to the status bar (details in the log file), never to a console nobody sees
+        Log.notifyWith(msg -> Platform.runLater(() -> setStatus(msg)));
+        ShiftStore.initDatabase();
+        startChangeFeed();
 
         // ===== Header =====
         Label title = new Label("Income Tracker");
-        title.setStyle("-fx-font-size: 14px; -fx-font-weight: 700;");
+        title.getStyleClass().add("title");
 
         Button closeBtn = new Button("✕");
         closeBtn.setFocusTraversable(false);
-        closeBtn.setStyle("""
-            -fx-background-color: transparent;
-            -fx-font-size: 14px;
-            -fx-padding: 2 8 2 8;
-        """);
+        closeBtn.getStyleClass().add("close-button");
         closeBtn.setOnAction(e -> stage.close());
 
         Region spacer = new Region();
@@ -74,21 +117,18 @@ public class TipCalculatorFx extends Application {
         for (Button b : new Button[]{logBtn, summaryBtn, listBtn, deleteBtn, helpBtn}) {
             b.setMaxWidth(Double.MAX_VALUE);
             b.setFocusTraversable(false);
-            b.setStyle("""
-                -fx-background-radius: 10;
-                -fx-padding: 8 10 8 10;
-            """);
+            b.getStyleClass().add("menu-button");
         }
 
         VBox menu = new VBox(8, logBtn, summaryBtn, listBtn, deleteBtn, helpBtn);
         menu.setPrefWidth(140);
 
         // ===== Status bar =====
-        statusLabel.setStyle("-fx-opacity: 0.85; -fx-font-size: 11px;");
+        statusLabel.getStyleClass().add("status");
 
         // ===== Content area (starts on Log Shift) =====
         content.setPadding(new Insets(6));
-        showLogShiftView();
+        showView("log", this::buildLogShiftView);
 
         // ===== Layout root =====
         HBox body = new HBox(12, menu, content);
@@ -96,15 +136,10 @@ public class TipCalculatorFx extends Application {
 
         VBox root = new VBox(12, header, body, statusLabel);
         root.setPadding(new Insets(14));
-        root.setStyle("""
-            -fx-background-color: #FFF6B3;
-            -fx-background-radius: 16;
-            -fx-border-radius: 16;
-            -fx-border-color: rgba(0,0,0,0.12);
-            -fx-border-width: 1;
-        """);
+        root.getStyleClass().add("widget");
 
         Scene scene = new Scene(root, 720, 420);
+        scene.getStylesheets().add(TipCalculatorFx.class.getResource("/tipcalc.css").toExternalForm());
 
         // ===== Widget behavior =====
         stage.initStyle(StageStyle.UNDECORATED);
@@ -122,11 +157,11 @@ public class TipCalculatorFx extends Application {
         });
 
         // ===== Wire buttons =====
-        logBtn.setOnAction(e -> showLogShiftView());
-        summaryBtn.setOnAction(e -> showMonthlySummaryView());
-        listBtn.setOnAction(e -> showListShiftsView());
-        deleteBtn.setOnAction(e -> showDeleteView());
-        helpBtn.setOnAction(e -> showHelpView());
+        logBtn.setOnAction(e -> showView("log", this::buildLogShiftView));
+        summaryBtn.setOnAction(e -> showView("summary", this::buildMonthlySummaryView));
+        listBtn.setOnAction(e -> showView("list", this::buildListShiftsView));
+        deleteBtn.setOnAction(e -> showView("delete", this::buildDeleteView));
+        helpBtn.setOnAction(e -> showView("help", this::buildHelpView));
 
         stage.show();
         setStatus("Ready.");
@@ -136,9 +171,9 @@ public class TipCalculatorFx extends Application {
     // VIEWS
     // =========================================================
 
-    private void showLogShiftView() {
+    private Region buildLogShiftView() {
         Label h = new Label("Log Shift");
-        h.setStyle("-fx-font-size: 16px; -fx-font-weight: 700;");
+        h.getStyleClass().add("view-title");
 
         DatePicker datePicker = new DatePicker(LocalDate.now());
 
@@ -153,8 +188,11 @@ public class TipCalculatorFx extends Application {
         tipsField.setPromptText("Tips (e.g. 120)");
         tipsField.setDisable(false);
 
+        TextField startField = new TextField();
+        startField.setPromptText("Start, optional (e.g. 17:30)");
+
         Label wageLabel = new Label("Wage: " + currency.format(SERVER_WAGE) + "/hr");
-        wageLabel.setStyle("-fx-opacity: 0.9;");
+        wageLabel.getStyleClass().add("hint");
 
         // tips disabled for TA
         roleBox.valueProperty().addListener((obs, oldV, newV) -> {
@@ -167,14 +205,10 @@ public class TipCalculatorFx extends Application {
         });
 
         Button save = new Button("Save Shift");
-        save.setStyle("""
-            -fx-background-radius: 10;
-            -fx-padding: 8 12 8 12;
-            -fx-font-weight: 700;
-        """);
+        save.getStyleClass().add("primary-button");
 
         Label result = new Label("");
-        result.setStyle("-fx-opacity: 0.85;");
+        result.getStyleClass().add("result");
 
         save.setOnAction(e -> {
             String role = roleBox.getValue();
@@ -202,11 +236,24 @@ public class TipCalculatorFx extends Application {
                 tips = t;
             }
 
+            LocalTime start = null;
+            if (!startField.getText().isBlank()) {
+                try {
+                    start = LocalTime.parse(startField.getText().trim());
+                } catch (DateTimeParseException ex) {
+                    setStatus("Start time must be HH:MM.");
+                    return;
+                }
+            }
+
             double wageRate = wageForRole(role);
+            double total = priceShift(date, role, hours, tips, wageRate);
 
-            insertShift(date, role, hours, tips, wageRate);
+            if (!ShiftStore.insertShift(date, role, hours, tips, wageRate, start)) {
+                setStatus("Save failed.");
+                return;
+            }
 
-            double total = tips + (hours * wageRate);
             double eph = total / hours;
 
             result.setText(
@@ -218,6 +265,7 @@ public class TipCalculatorFx extends Application {
 
             // clear fields but keep role + date
             hoursField.clear();
+            startField.clear();
             if (!"TA".equalsIgnoreCase(role)) tipsField.clear();
         });
 
@@ -233,24 +281,26 @@ public class TipCalculatorFx extends Application {
         form.add(hoursField, 1, 2);
         form.add(new Label("Tips:"), 0, 3);
         form.add(tipsField, 1, 3);
-        form.add(save, 1, 4);
+        form.add(new Label("Start:"), 0, 4);
+        form.add(startField, 1, 4);
+        form.add(save, 1, 5);
 
         VBox box = new VBox(10, h, form, result);
         box.setPadding(new Insets(10));
-        setContent(box);
+        return box;
     }
 
-    private void showMonthlySummaryView() {
+    private Region buildMonthlySummaryView() {
         Label h = new Label("Monthly Summary");
-        h.setStyle("-fx-font-size: 16px; -fx-font-weight: 700;");
+        h.getStyleClass().add("view-title");
 
         DatePicker anyDayInMonth = new DatePicker(LocalDate.now());
 
         Button load = new Button("Load Summary");
-        load.setStyle("-fx-background-radius: 10; -fx-padding: 8 12 8 12; -fx-font-weight: 700;");
+        load.getStyleClass().add("primary-button");
 
         Label out = new Label("");
-        out.setStyle("-fx-opacity: 0.9; -fx-font-size: 12px;");
+        out.getStyleClass().add("summary-text");
 
         load.setOnAction(e -> {
             LocalDate d = anyDayInMonth.getValue();
@@ -258,43 +308,138 @@ public class TipCalculatorFx extends Application {
                 setStatus("Pick a date in the month you want.");
                 return;
             }
-            YearMonth ym = YearMonth.from(d);
-            MonthlySummary ms = getMonthlySummary(ym);
-
-            String avg = (ms.totalHours > 0)
-                ? currency.format(ms.totalEarnings / ms.totalHours)
-                : "N/A";
-
-            out.setText(
-                "Month: " + ym + "\n" +
-                "Shifts: " + ms.shiftCount + "\n" +
-                "Hours: " + round2(ms.totalHours) + "\n" +
-                "Tips: " + currency.format(ms.totalTips) + "\n" +
-                "Earnings: " + currency.format(ms.totalEarnings) + "\n" +
-                "Avg $/hr: " + avg
-            );
+            summaryMonth = YearMonth.from(d);
+            summaryShown = ShiftStore.getMonthlySummary(summaryMonth);
+            summaryDetails = null;
+            renderSummary();
+            refreshSummaryDetails();
             setStatus("Summary loaded.");
         });
+        summaryOut = out;
+        renderSummary(); // a rebuilt view re-shows the last loaded month, if any
 
         HBox top = new HBox(10, new Label("Pick any day:"), anyDayInMonth, load);
         top.setAlignment(Pos.CENTER_LEFT);
 
         VBox box = new VBox(10, h, top, out);
         box.setPadding(new Insets(10));
-        setContent(box);
+        return box;
+    }
+
+    // Totals come from summaryShown, which live updates patch in place; the rest is whatever
+    // refreshSummaryDetails() last computed for the month.
+    private void renderSummary() {
+        if (summaryOut == null || summaryShown == null) return;
+
+        YearMonth ym = summaryMonth;
+        ShiftStore.MonthlySummary ms = summaryShown;
+        SummaryDetails d = summaryDetails;
+
+        String avg = (ms.totalHours > 0)
+            ? currency.format(ms.totalEarnings / ms.totalHours)
+            : "N/A";
+
+        summaryOut.setText(
+            "Month: " + ym + "\n" +
+            "Shifts: " + ms.shiftCount + "\n" +
+            "Hours: " + round2(ms.totalHours) + "\n" +
+            "Tips: " + currency.format(ms.totalTips) + "\n" +
+            "Earnings: " + currency.format(ms.totalEarnings) + "\n" +
+            "Avg $/hr: " + avg +
+            (d == null ? "" : payrollText(d.payroll(), ms) + percentilesText(d.percentiles()) + forecastText(d.forecast()))
+        );
+    }
+
+    // Payroll, percentiles and the forecast each rescan the month, so they are queried on
+    // summaryWorker and handed back to the FX thread when done. Requests made while one is
+    // running are folded into a single follow-up.
+    private void refreshSummaryDetails() {
+        if (summaryMonth == null) return;
+        if (detailsRunning) {
+            detailsStale = true;
+            return;
+        }
+        detailsRunning = true;
+
+        YearMonth ym = summaryMonth;
+        summaryWorker.execute(() -> {
+            SummaryDetails details = new SummaryDetails(
+                PayRules.current().isConfigured() ? ShiftStore.getPayroll(ym) : null,
+                ShiftStore.getPercentiles(ym, ym),
+                ShiftStore.getMonthlyForecast(ym));
+            Platform.runLater(() -> {
+                detailsRunning = false;
+                if (ym.equals(summaryMonth)) {
+                    summaryDetails = details;
+                    renderSummary();
+                }
+                if (detailsStale) {
+                    detailsStale = false;
+                    refreshSummaryDetails();
+                }
+            });
+        });
+    }
+
+    // payroll is null when no pay rules are configured
+    private record SummaryDetails(PayRules.Totals payroll,
+                                  Map<String, ShiftSketches.Percentiles> percentiles,
+                                  ShiftStats.Forecast forecast) {}
+
+    private String payrollText(PayRules.Totals pay, ShiftStore.MonthlySummary ms) {
+        if (pay == null || ms.shiftCount == 0) return "";
+
+        return "\n\nPayroll (pay rules): " + currency.format(pay.total()) + "\n" +
+            "Overtime: " + currency.format(pay.overtimePremium) + " (" + round2(pay.overtimeHours) + " h)" +
+            " • Holiday: " + currency.format(pay.holidayPremium) + "\n" +
+            "Tip-out: -" + currency.format(pay.tipOut) + " • Top-up: " + currency.format(pay.topUp);
+    }
+
+    private String percentilesText(Map<String, ShiftSketches.Percentiles> byRole) {
+        if (byRole.isEmpty()) return "";
+
+        StringBuilder sb = new StringBuilder("\n\nPercentiles (p10 / median / p90):");
+        for (Map.Entry<String, ShiftSketches.Percentiles> e : byRole.entrySet()) {
+            ShiftSketches.Percentiles p = e.getValue();
+            sb.append("\n").append(e.getKey()).append(": tips ").append(quantilesText(p.tips()))
+              .append(" • $/hr ").append(quantilesText(p.perHour()));
+        }
+        return sb.toString();
+    }
+
+    private String quantilesText(ShiftSketches.Quantiles q) {
+        if (Double.isNaN(q.p50())) return "N/A";
+        return currency.format(q.p10()) + " / " + currency.format(q.p50()) + " / " + currency.format(q.p90());
+    }
+
+    private String forecastText(ShiftStats.Forecast f) {
+        if (f == null || f.remainingDays == 0) return "";
+        if (f.historyShifts == 0) return "\n\nForecast: not enough history yet.";
+
+        return "\n\nMonth-end forecast (" + f.remainingDays + " day(s) left):\n" +
+            "Earnings: " + bandText(f.earnings) + "\n" +
+            "Tips: " + bandText(f.tips) + "\n" +
+            "$/hr: " + (f.perHour == null ? "N/A" : bandText(f.perHour));
     }
 
-    private void showListShiftsView() {
+    private String bandText(ShiftStats.Band b) {
+        return currency.format(b.expected())
+            + " (" + currency.format(b.low()) + " - " + currency.format(b.high()) + ")";
+    }
+
+    private Region buildListShiftsView() {
         Label h = new Label("List Shifts");
-        h.setStyle("-fx-font-size: 16px; -fx-font-weight: 700;");
+        h.getStyleClass().add("view-title");
 
         DatePicker anyDayInMonth = new DatePicker(LocalDate.now());
 
         Button load = new Button("Load Shifts");
-        load.setStyle("-fx-background-radius: 10; -fx-padding: 8 12 8 12; -fx-font-weight: 700;");
+        load.getStyleClass().add("primary-button");
 
         TableView<ShiftRow> table = buildShiftTable();
         table.setItems(shiftRows);
+        listTable = table;
+        filter = ShiftFilter.NONE;
 
         load.setOnAction(e -> {
             LocalDate d = anyDayInMonth.getValue();
@@ -303,33 +448,150 @@ public class TipCalculatorFx extends Application {
                 return;
             }
             YearMonth ym = YearMonth.from(d);
-            shiftRows.setAll(fetchShiftsForMonth(ym));
-            setStatus("Loaded " + shiftRows.size() + " shift(s) for " + ym + ".");
+            loadRows(ym.atDay(1), ym.atEndOfMonth(),
+                () -> setStatus("Loaded " + shiftRows.size() + " shift(s) for " + ym + "."));
         });
 
         HBox top = new HBox(10, new Label("Pick any day:"), anyDayInMonth, load);
         top.setAlignment(Pos.CENTER_LEFT);
 
-        VBox box = new VBox(10, h, top, table);
+        // ===== filter bar: re-filters on every keystroke =====
+        ComboBox<String> roleFilter = new ComboBox<>();
+        roleFilter.getItems().addAll("ALL", "SERVER", "HOST", "TA");
+        roleFilter.setValue("ALL");
+
+        TextField tipsMin = filterField("Tips ≥");
+        TextField tipsMax = filterField("Tips ≤");
+        TextField hoursMin = filterField("Hours ≥");
+        TextField hoursMax = filterField("Hours ≤");
+
+        DatePicker fromPicker = new DatePicker();
+        fromPicker.setPromptText("From");
+        fromPicker.setPrefWidth(120);
+        DatePicker toPicker = new DatePicker();
+        toPicker.setPromptText("To");
+        toPicker.setPrefWidth(120);
+
+        Runnable onFilter = () -> filterChanged(new ShiftFilter(
+            "ALL".equals(roleFilter.getValue()) ? null : roleFilter.getValue(),
+            parseDouble(tipsMin.getText()), parseDouble(tipsMax.getText()),
+            parseDouble(hoursMin.getText()), parseDouble(hoursMax.getText()),
+            fromPicker.getValue(), toPicker.getValue()));
+
+        roleFilter.valueProperty().addListener((obs, oldV, newV) -> onFilter.run());
+        for (TextField f : new TextField[]{tipsMin, tipsMax, hoursMin, hoursMax}) {
+            f.textProperty().addListener((obs, oldV, newV) -> onFilter.run());
+        }
+        fromPicker.valueProperty().addListener((obs, oldV, newV) -> onFilter.run());
+        toPicker.valueProperty().addListener((obs, oldV, newV) -> onFilter.run());
+
+        HBox filters = new HBox(6, roleFilter, tipsMin, tipsMax, hoursMin, hoursMax, fromPicker, toPicker);
+        filters.setAlignment(Pos.CENTER_LEFT);
+
+        VBox box = new VBox(10, h, top, filters, table);
         box.setPadding(new Insets(10));
-        setContent(box);
+        return box;
+    }
+
+    private static TextField filterField(String prompt) {
+        TextField f = new TextField();
+        f.setPromptText(prompt);
+        f.setPrefColumnCount(5);
+        return f;
     }
 
-    private void showDeleteView() {
+    // =========================================================
+    // Filtering
+    // =========================================================
+
+    // A date range reaching outside the loaded rows is pushed down to SQL (an indexed range seek)
+    // on listWorker; everything else is answered from the in-memory index over the loaded rows.
+    private void filterChanged(ShiftFilter f) {
+        filter = f;
+
+        LocalDate from = f.dateFrom();
+        LocalDate to = f.dateTo();
+        if (from != null && to != null && !from.isAfter(to)
+                && (listedFrom == null || from.isBefore(listedFrom) || to.isAfter(listedTo))) {
+            loadRows(from, to, null);
+        }
+        applyFilter(); // over what is loaded now; again once the new rows arrive
+    }
+
+    // Queries [from, to] and builds its index on listWorker, then swaps both in on the FX thread
+    // and re-applies the filter. Live changes arriving meanwhile are held and replayed onto the
+    // new rows (replays are idempotent), and a load overtaken by a newer one is dropped.
+    private void loadRows(LocalDate from, LocalDate to, Runnable done) {
+        long generation = ++loadGeneration;
+        listedFrom = from;
+        listedTo = to;
+        if (heldChanges == null) heldChanges = new ArrayList<>();
+        setStatus("Loading shifts...");
+
+        listWorker.execute(() -> {
+            List<ShiftRow> rows = fetchShifts(from, to);
+            ShiftIndex index = buildIndex(rows);
+            Platform.runLater(() -> {
+                if (generation != loadGeneration) return;
+
+                shiftRows.setAll(rows);
+                shiftIndex = index;
+                List<ShiftChangeFeed.Change> held = heldChanges;
+                heldChanges = null;
+                for (ShiftChangeFeed.Change c : held) patchRows(c);
+
+                applyFilter();
+                if (done != null) done.run();
+            });
+        });
+    }
+
+    private void applyFilter() {
+        if (listTable == null) return;
+        if (filter.isEmpty()) {
+            listTable.setItems(shiftRows);
+            setStatus(shiftRows.size() + " shift(s).");
+            return;
+        }
+
+        long start = System.nanoTime();
+        int[] hits = shiftIndex.match(filter);
+        ShiftRow[] matched = new ShiftRow[hits.length];
+        for (int k = 0; k < hits.length; k++) matched[k] = shiftRows.get(hits[k]);
+        visibleRows.setAll(matched);
+        listTable.setItems(visibleRows);
+
+        double ms = (System.nanoTime() - start) / 1e6;
+        setStatus("Showing " + hits.length + " of " + shiftRows.size() + " shift(s) (" + round2(ms) + " ms).");
+    }
+
+    private static ShiftIndex buildIndex(List<ShiftRow> rows) {
+        int n = rows.size();
+        String[] roles = new String[n];
+        double[] tips = new double[n];
+        double[] hours = new double[n];
+        long[] days = new long[n];
+        for (int i = 0; i < n; i++) {
+            ShiftRow r = rows.get(i);
+            roles[i] = r.getRole();
+            tips[i] = r.getTips();
+            hours[i] = r.getHours();
+            days[i] = LocalDate.parse(r.getDate()).toEpochDay();
+        }
+        return new ShiftIndex(roles, tips, hours, days);
+    }
+
+    private Region buildDeleteView() {
         Label h = new Label("Delete Shifts by Date");
-        h.setStyle("-fx-font-size: 16px; -fx-font-weight: 700;");
+        h.getStyleClass().add("view-title");
 
         DatePicker datePicker = new DatePicker(LocalDate.now());
 
         Button del = new Button("Delete ALL shifts on this date");
-        del.setStyle("""
-            -fx-background-radius: 10;
-            -fx-padding: 8 12 8 12;
-            -fx-font-weight: 700;
-        """);
+        del.getStyleClass().add("primary-button");
 
         Label out = new Label("");
-        out.setStyle("-fx-opacity: 0.9;");
+        out.getStyleClass().add("hint");
 
         del.setOnAction(e -> {
             LocalDate d = datePicker.getValue();
@@ -347,19 +609,19 @@ public class TipCalculatorFx extends Application {
                 return;
             }
 
-            int rows = deleteShiftsByDate(d);
+            int rows = ShiftStore.deleteShiftsByDate(d);
             out.setText("Deleted " + rows + " shift(s) on " + d + ".");
             setStatus("Delete finished.");
         });
 
         VBox box = new VBox(10, h, new Label("Date:"), datePicker, del, out);
         box.setPadding(new Insets(10));
-        setContent(box);
+        return box;
     }
 
-    private void showHelpView() {
+    private Region buildHelpView() {
         Label h = new Label("Help");
-        h.setStyle("-fx-font-size: 16px; -fx-font-weight: 700;");
+        h.getStyleClass().add("view-title");
 
         Label text = new Label(
             "Roles:\n" +
@@ -372,145 +634,157 @@ public class TipCalculatorFx extends Application {
             "  List Shifts: table view\n" +
             "  Delete by Date: deletes ALL shifts on the selected date\n"
         );
-        text.setStyle("-fx-opacity: 0.9;");
+        text.getStyleClass().add("hint");
 
         VBox box = new VBox(10, h, text);
         box.setPadding(new Insets(10));
-        setContent(box);
+        return box;
     }
 
-    private void setContent(Region node) {
-        content.getChildren().setAll(node);
-        StackPane.setMargin(node, new Insets(0));
+    // Each view is built on first use and then kept, with whatever it had loaded, for the rest of
+    // the session. With tipcalc.logLevel=DEBUG each switch's latency and allocation, CSS and
+    // layout included, are logged (view_shown); run once more with the benchmark-only
+    // -Dtipcalc.viewCache=false to get the rebuild-on-click figures to compare against.
+    private void showView(String name, Supplier<Region> builder) {
+        long start = System.nanoTime();
+        long allocated = allocatedBytes();
+
+        Region view = CACHE_VIEWS ? views.computeIfAbsent(name, k -> builder.get()) : builder.get();
+        content.getChildren().setAll(view);
+        StackPane.setMargin(view, new Insets(0));
+
+        if (Log.enabled(Log.Level.DEBUG)) {
+            // include the CSS and layout pass the switch triggers, not just building nodes
+            content.applyCss();
+            content.layout();
+            Log.debug("view_shown", "view", name, "cached", CACHE_VIEWS, "ms", Log.ms(start),
+                "kb", (allocatedBytes() - allocated) / 1024);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+            ? t.getCurrentThreadAllocatedBytes()
+            : 0;
     }
 
     // =========================================================
-    // DB + Queries
+    // Live updates
     // =========================================================
 
-    private static void initDatabase() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS shifts (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                shift_date TEXT NOT NULL,
-                role TEXT NOT NULL,
-                hours_worked REAL NOT NULL,
-                tips REAL NOT NULL,
-                wage_rate REAL NOT NULL
-            );
-        """;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+    // Picks up writes from this app and from other processes (e.g. the CLI) and patches the
+    // loaded table and summary with just the changed rows.
+    private void startChangeFeed() {
+        try {
+            changeFeed = ShiftChangeFeed.watch(WATCH_INTERVAL_MS, batch -> Platform.runLater(() -> applyChanges(batch)));
         } catch (SQLException e) {
-            System.out.println("Failed to init DB: " + e.getMessage());
+            Log.warn("live_updates_unavailable", e);
         }
     }
 
-    private static void insertShift(LocalDate date, String role, double hours, double tips, double wage) {
-        String sql = "INSERT INTO shifts VALUES (NULL, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, date.toString());
-            ps.setString(2, role);
-            ps.setDouble(3, hours);
-            ps.setDouble(4, tips);
-            ps.setDouble(5, wage);
-            ps.executeUpdate();
+    @Override
+    public void stop() {
+        if (changeFeed != null) changeFeed.close();
+        summaryWorker.shutdownNow();
+        listWorker.shutdownNow();
+    }
 
-        } catch (SQLException e) {
-            System.out.println("Insert failed: " + e.getMessage());
+    private void applyChanges(ShiftChangeFeed.Batch batch) {
+        if (batch.resync()) {
+            // the log was pruned past what we last saw; fall back to a full reload once
+            if (listedFrom != null) loadRows(listedFrom, listedTo, null);
+            if (summaryMonth != null) {
+                summaryShown = ShiftStore.getMonthlySummary(summaryMonth);
+                renderSummary();
+                refreshSummaryDetails();
+            }
+            return;
         }
-    }
 
-    private static int deleteShiftsByDate(LocalDate date) {
-        String sql = "DELETE FROM shifts WHERE shift_date = ?";
+        int applied = 0;
+        boolean summaryTouched = false;
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        for (ShiftChangeFeed.Change c : batch.changes()) {
+            ShiftStore.Shift s = c.shift();
+            YearMonth ym = YearMonth.from(s.date());
+            boolean insert = c.op() == ShiftChangeFeed.Op.INSERT;
 
-            ps.setString(1, date.toString());
-            return ps.executeUpdate();
+            if (heldChanges != null) {
+                heldChanges.add(c); // a load is running; patched in once its rows arrive
+            } else if (patchRows(c)) {
+                applied++;
+            }
+            if (ym.equals(summaryMonth) && summaryShown != null) {
+                summaryShown.apply(s, insert ? 1 : -1);
+                summaryTouched = true;
+            }
+        }
 
-        } catch (SQLException e) {
-            System.out.println("Delete failed: " + e.getMessage());
-            return 0;
+        if (summaryTouched) {
+            renderSummary();          // totals are already patched
+            refreshSummaryDetails();  // the rest is requeried off the FX thread
+        }
+        if (applied > 0) {
+            if (!filter.isEmpty()) applyFilter(); // the index was patched along with the rows
+            setStatus("Live update: " + applied + " change(s) applied.");
         }
     }
 
-    private static MonthlySummary getMonthlySummary(YearMonth ym) {
-        String sql = """
-            SELECT
-                COALESCE(COUNT(*), 0),
-                COALESCE(SUM(hours_worked), 0),
-                COALESCE(SUM(tips), 0),
-                COALESCE(SUM(tips + hours_worked * wage_rate), 0)
-            FROM shifts
-            WHERE shift_date BETWEEN ? AND ?
-        """;
-
-        MonthlySummary ms = new MonthlySummary();
+    // Applies one change to shiftRows and shiftIndex if it falls in the listed range.
+    private boolean patchRows(ShiftChangeFeed.Change c) {
+        ShiftStore.Shift s = c.shift();
+        if (listedFrom == null || s.date().isBefore(listedFrom) || s.date().isAfter(listedTo)) return false;
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        if (c.op() == ShiftChangeFeed.Op.INSERT) insertRow(s);
+        else removeRow(s);
+        return true;
+    }
 
-            ps.setString(1, ym.atDay(1).toString());
-            ps.setString(2, ym.atEndOfMonth().toString());
+    // shiftRows stays ordered by (date, id), same as the query
+    private void insertRow(ShiftStore.Shift s) {
+        int i = lowerBound(s.date().toString());
+        while (i < shiftRows.size()
+               && shiftRows.get(i).getDate().equals(s.date().toString())
+               && shiftRows.get(i).getId() < s.id()) {
+            i++;
+        }
+        if (i < shiftRows.size() && shiftRows.get(i).getId() == s.id()) return; // already loaded
+        shiftRows.add(i, new ShiftRow(s.id(), s.date().toString(), s.role(), s.hours(), s.tips(), s.wage(), s.total()));
+        shiftIndex.insert(i, s.role(), s.tips(), s.hours(), s.date().toEpochDay());
+    }
 
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    ms.shiftCount = rs.getInt(1);
-                    ms.totalHours = rs.getDouble(2);
-                    ms.totalTips = rs.getDouble(3);
-                    ms.totalEarnings = rs.getDouble(4);
-                }
+    private void removeRow(ShiftStore.Shift s) {
+        String date = s.date().toString();
+        for (int i = lowerBound(date); i < shiftRows.size() && shiftRows.get(i).getDate().equals(date); i++) {
+            if (shiftRows.get(i).getId() == s.id()) {
+                shiftRows.remove(i);
+                shiftIndex.remove(i);
+                return;
             }
-
-        } catch (SQLException e) {
-            System.out.println("Summary failed: " + e.getMessage());
         }
-
-        return ms;
     }
 
-    private static ObservableList<ShiftRow> fetchShiftsForMonth(YearMonth ym) {
-        ObservableList<ShiftRow> rows = FXCollections.observableArrayList();
-
-        String sql = """
-            SELECT id, shift_date, role, hours_worked, tips, wage_rate,
-                   (tips + hours_worked * wage_rate) AS total_earnings
-            FROM shifts
-            WHERE shift_date BETWEEN ? AND ?
-            ORDER BY shift_date, id
-        """;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, ym.atDay(1).toString());
-            ps.setString(2, ym.atEndOfMonth().toString());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String date = rs.getString("shift_date");
-                    String role = rs.getString("role");
-                    double hours = rs.getDouble("hours_worked");
-                    double tips = rs.getDouble("tips");
-                    double wage = rs.getDouble("wage_rate");
-                    double total = rs.getDouble("total_earnings");
+    // first index whose date is >= date (ISO dates sort as strings)
+    private int lowerBound(String date) {
+        int lo = 0, hi = shiftRows.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (shiftRows.get(mid).getDate().compareTo(date) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
 
-                    rows.add(new ShiftRow(id, date, role, hours, tips, wage, total));
-                }
-            }
+    // =========================================================
+    // Queries (persistence lives in ShiftStore)
+    // =========================================================
 
-        } catch (SQLException e) {
-            System.out.println("List failed: " + e.getMessage());
+    // any thread; the rows are handed to the FX thread afterwards
+    private static List<ShiftRow> fetchShifts(LocalDate from, LocalDate to) {
+        List<ShiftRow> rows = new ArrayList<>();
+        for (ShiftStore.Shift s : ShiftStore.fetchShiftsInRange(from, to)) {
+            rows.add(new ShiftRow(s.id(), s.date().toString(), s.role(), s.hours(), s.tips(), s.wage(), s.total()));
         }
-
         return rows;
     }
 
@@ -572,7 +846,24 @@ public class TipCalculatorFx extends Application {
     // =========================================================
 
     private void setStatus(String msg) {
-        statusLabel.setText(msg == null ? "" : msg);
+        String text = msg == null ? "" : msg;
+        // another process (usually the CLI) has been holding the write lock
+        if (Database.hadContention()) text += "  [db " + Database.contentionReport() + "]";
+        statusLabel.setText(text);
+    }
+
+    // Shift total under the pay rules, priced as the newest shift of its day (which it is about
+    // to become); plain tips + wages when no rules are configured.
+    private static double priceShift(LocalDate date, String role, double hours, double tips, double wage) {
+        PayRules rules = PayRules.current();
+        if (rules.isConfigured()) {
+            try {
+                return rules.payFor(new ShiftStore.Shift(Integer.MAX_VALUE, date, role, hours, tips, wage)).total();
+            } catch (SQLException e) {
+                Log.warn("pay_rules_unavailable", e, "date", date, "role", role);
+            }
+        }
+        return tips + (hours * wage);
     }
 
     private static Double parseDouble(String s) {
@@ -604,13 +895,6 @@ public class TipCalculatorFx extends Application {
     // Data classes
     // =========================================================
 
-    private static class MonthlySummary {
-        int shiftCount;
-        double totalHours;
-        double totalTips;
-        double totalEarnings;
-    }
-
     public static class ShiftRow {
         private final SimpleIntegerProperty id;
         private final SimpleStringProperty date;
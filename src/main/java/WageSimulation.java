@@ -0,0 +1,226 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// What-if earnings for all of history under alternative wage tables.
+//
+// History is read once, in date order, into primitive columns per role (hours, stored wage_rate,
+// tips), so each (role, month) is a contiguous run of rows. One parallel pass then reduces every
+// run to sum(hours), sum(hours * wage_rate) and sum(tips). Because wages in a table are per role,
+// a table's wages for a month are just sum over roles of rate * sum(hours); any number of tables
+// costs O(months * roles) after the pass.
+final class WageSimulation {
+
+    private WageSimulation() {}
+
+    // ================= RUN =================
+
+    static Result run(List<WageTable> tables) throws SQLException {
+        long start = System.nanoTime();
+        History h;
+        try (Connection conn = Database.open()) {
+            h = load(conn);
+        }
+        long loaded = System.nanoTime();
+
+        Result r = simulate(h, tables);
+        r.loadMs = (loaded - start) / 1_000_000;
+        r.simulateMs = (System.nanoTime() - loaded) / 1_000_000;
+        return r;
+    }
+
+    static Result simulate(History h, List<WageTable> tables) {
+        int roles = h.roles.size();
+        int months = h.months();
+
+        // per role and month: hours, stored wages paid, tips
+        double[][] hours = new double[roles][months];
+        double[][] paid = new double[roles][months];
+        double[][] tips = new double[roles][months];
+
+        // one task per (role, month) run; each writes only its own cells
+        List<int[]> runs = new ArrayList<>();
+        for (int r = 0; r < roles; r++) {
+            Columns c = h.columns.get(r);
+            for (int s = 0; s < c.segments; s++) runs.add(new int[]{r, s});
+        }
+
+        IntStream.range(0, runs.size()).parallel().forEach(k -> {
+            int r = runs.get(k)[0];
+            int s = runs.get(k)[1];
+            Columns c = h.columns.get(r);
+            int from = c.segStart[s];
+            int to = s + 1 < c.segments ? c.segStart[s + 1] : c.size;
+
+            double[] out = new double[3];
+            sums(c.hours, c.wage, c.tips, from, to, out);
+
+            int m = c.segMonth[s] - h.firstMonth;
+            hours[r][m] = out[0];
+            paid[r][m] = out[1];
+            tips[r][m] = out[2];
+        });
+
+        Result res = new Result();
+        res.shifts = h.size();
+        res.tables = tables;
+        res.threads = ForkJoinPool.getCommonPoolParallelism();
+        res.delta = new double[tables.size()][months];
+        res.stored = new double[months];
+
+        for (int m = 0; m < months; m++) {
+            res.months.add(YearMonth.of((h.firstMonth + m) / 12, (h.firstMonth + m) % 12 + 1));
+            for (int r = 0; r < roles; r++) res.stored[m] += paid[r][m] + tips[r][m];
+
+            for (int t = 0; t < tables.size(); t++) {
+                double d = 0;
+                for (int r = 0; r < roles; r++) {
+                    Double rate = tables.get(t).rates().get(h.roles.get(r));
+                    if (rate != null) d += rate * hours[r][m] - paid[r][m];
+                }
+                res.delta[t][m] = d;
+            }
+        }
+        return res;
+    }
+
+    private static void sums(double[] hours, double[] wage, double[] tips, int from, int to, double[] out) {
+        double sh = 0, sp = 0, st = 0;
+        for (int i = from; i < to; i++) {
+            sh += hours[i];
+            sp += hours[i] * wage[i];
+            st += tips[i];
+        }
+        out[0] = sh;
+        out[1] = sp;
+        out[2] = st;
+    }
+
+    // ================= LOADING =================
+
+    static History load(Connection conn) throws SQLException {
+        History h = new History();
+        Map<String, Integer> roleIndex = new HashMap<>();
+
+        String sql = "SELECT role, shift_date, hours_worked, wage_rate, tips FROM %s ORDER BY shift_date"
+            .formatted(ShiftPartitions.source(conn, null, null));
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    String role = rs.getString(1);
+                    Integer r = roleIndex.get(role);
+                    if (r == null) {
+                        r = h.roles.size();
+                        roleIndex.put(role, r);
+                        h.roles.add(role);
+                        h.columns.add(new Columns());
+                    }
+
+                    // yyyy-MM-dd; months counted from year 0
+                    String d = rs.getString(2);
+                    int month = Integer.parseInt(d, 0, 4, 10) * 12 + Integer.parseInt(d, 5, 7, 10) - 1;
+                    h.firstMonth = Math.min(h.firstMonth, month);
+                    h.lastMonth = Math.max(h.lastMonth, month);
+
+                    h.columns.get(r).add(month, rs.getDouble(3), rs.getDouble(4), rs.getDouble(5));
+                }
+            }
+        }
+        return h;
+    }
+
+    // ================= DATA =================
+
+    // rates by role; a role left out keeps its stored wage_rate
+    record WageTable(String name, Map<String, Double> rates) {
+
+        // "SERVER=3.50,HOST=12" (role names case-insensitive)
+        static WageTable parse(String name, String spec) {
+            Map<String, Double> rates = new LinkedHashMap<>();
+            for (String part : spec.split(",")) {
+                String p = part.trim();
+                if (p.isEmpty()) continue;
+                String[] kv = p.split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("expected ROLE=RATE, got '" + p + "'");
+                double rate = Double.parseDouble(kv[1].trim());
+                if (rate < 0) throw new IllegalArgumentException("negative rate for " + kv[0].trim());
+                rates.put(kv[0].trim().toUpperCase(), rate);
+            }
+            if (rates.isEmpty()) throw new IllegalArgumentException("empty wage table");
+            return new WageTable(name, rates);
+        }
+    }
+
+    static final class History {
+        final List<String> roles = new ArrayList<>();
+        final List<Columns> columns = new ArrayList<>();
+        int firstMonth = Integer.MAX_VALUE;
+        int lastMonth = Integer.MIN_VALUE;
+
+        int months() {
+            return lastMonth < firstMonth ? 0 : lastMonth - firstMonth + 1;
+        }
+
+        long size() {
+            long n = 0;
+            for (Columns c : columns) n += c.size;
+            return n;
+        }
+    }
+
+    // growable primitive columns for one role, rows in date order, with the start row of each month
+    private static final class Columns {
+        double[] hours = new double[1024];
+        double[] wage = new double[1024];
+        double[] tips = new double[1024];
+        int size;
+
+        int[] segMonth = new int[16];
+        int[] segStart = new int[16];
+        int segments;
+
+        void add(int month, double h, double w, double t) {
+            if (size == hours.length) {
+                hours = Arrays.copyOf(hours, size * 2);
+                wage = Arrays.copyOf(wage, size * 2);
+                tips = Arrays.copyOf(tips, size * 2);
+            }
+            if (segments == 0 || segMonth[segments - 1] != month) {
+                if (segments == segMonth.length) {
+                    segMonth = Arrays.copyOf(segMonth, segments * 2);
+                    segStart = Arrays.copyOf(segStart, segments * 2);
+                }
+                segMonth[segments] = month;
+                segStart[segments] = size;
+                segments++;
+            }
+            hours[size] = h;
+            wage[size] = w;
+            tips[size] = t;
+            size++;
+        }
+    }
+
+    static final class Result {
+        long shifts;
+        List<WageTable> tables;
+        final List<YearMonth> months = new ArrayList<>();
+        double[] stored;          // stored earnings (tips + hours * wage_rate) per month
+        double[][] delta;         // [table][month] change in earnings
+        int threads;
+        long loadMs;
+        long simulateMs;
+    }
+}